@@ -0,0 +1,262 @@
+package forZeroTier;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * ChatClient - API programática del chat multicast, sin dependencia de la consola
+ * Proyecto: Sistema de Chat Multicast con ZeroTier
+ * Características: Envío no bloqueante con CompletableFuture, callbacks de recepción,
+ * ciclo de vida explícito (start/close/restart) para embeber varios clientes en una misma JVM
+ *
+ * Con sockets reales usa un hilo receptor y uno de envío. Con transportes dirigidos por eventos
+ * (simulation.SimulatedNetwork) no crea hilos: los callbacks corren en el hilo que avanza la red.
+ */
+public class ChatClient implements AutoCloseable {
+    public static final long STARTUP_TIMEOUT_MILLIS = 5000;   // Espera máxima a que el receptor esté listo
+    public static final long SHUTDOWN_TIMEOUT_MILLIS = 100;   // Plazo total de close(): vaciado del emisor y espera al receptor
+    
+    private final String multicastAddress;
+    private final int port;
+    private final String username;
+    private final Supplier<MulticastTransport> senderTransports;
+    private final Supplier<MulticastTransport> receiverTransports;
+    private final List<MessageListener> listeners;
+    private final AtomicBoolean running;
+    private volatile MulticastReceiver receiver;
+    private volatile MulticastSender sender;
+    private ExecutorService executorService;
+    private volatile boolean verbose = true;
+    private volatile long startupMillis = -1;
+    private volatile long shutdownMillis = -1;
+    
+    public ChatClient(String multicastAddress, int port, String username) {
+        this(multicastAddress, port, username, null, null);
+    }
+    
+    /**
+     * Crea un cliente cuyos transportes se obtienen de los proveedores indicados en cada start(),
+     * por ejemplo nodos de simulation.SimulatedNetwork. Un proveedor null usa un SocketTransport real
+     */
+    public ChatClient(String multicastAddress, int port, String username,
+                      Supplier<MulticastTransport> senderTransports,
+                      Supplier<MulticastTransport> receiverTransports) {
+        this.multicastAddress = multicastAddress;
+        this.port = port;
+        this.username = username;
+        this.senderTransports = senderTransports;
+        this.receiverTransports = receiverTransports;
+        this.listeners = new CopyOnWriteArrayList<>();
+        this.running = new AtomicBoolean(false);
+    }
+    
+    /**
+     * Inicia receptor y emisor en paralelo y retorna cuando el receptor ya se unió al grupo
+     * Lanza IOException si no queda listo dentro de STARTUP_TIMEOUT_MILLIS
+     */
+    public void start() throws IOException {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("El cliente ya está iniciado");
+        }
+        long begin = System.nanoTime();
+        receiver = null;
+        sender = null;
+        executorService = null;
+        
+        try {
+            // Dentro del try: si un proveedor falla (por ejemplo "Dirección en uso"), close() libera
+            // el transporte ya creado y el cliente no queda marcado como iniciado
+            receiver = new MulticastReceiver(multicastAddress, port,
+                receiverTransports != null ? receiverTransports.get() : null);
+            receiver.setVerbose(verbose);
+            receiver.addMessageListener(this::dispatch);
+            sender = new MulticastSender(multicastAddress, port,
+                senderTransports != null ? senderTransports.get() : null);
+            sender.setVerbose(verbose);
+            
+            if (receiver.isEventDriven()) {
+                // Red simulada: el transporte entrega los datagramas desde su bucle de eventos
+                receiver.open();
+            } else {
+                executorService = Executors.newSingleThreadExecutor(runnable -> {
+                    Thread thread = new Thread(runnable);
+                    thread.setName("MulticastReceiver-" + username);
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                executorService.submit(receiver);
+            }
+            sender.open(username);
+            
+            // Señal de listo en lugar de una espera fija
+            receiver.ready().get(STARTUP_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        } catch (ExecutionException e) {
+            close();
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : 
+                new IOException("Error al iniciar el receptor", e.getCause());
+        } catch (TimeoutException e) {
+            close();
+            throw new IOException("El receptor no estuvo listo en " + STARTUP_TIMEOUT_MILLIS + " ms");
+        } catch (InterruptedException e) {
+            close();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Inicio del cliente interrumpido");
+        }
+        
+        startupMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+    }
+    
+    /**
+     * Envía un mensaje a la sala por defecto (grupo multicast del cliente)
+     */
+    public CompletableFuture<Void> send(String payload) {
+        return send(multicastAddress, payload);
+    }
+    
+    /**
+     * Envía un mensaje a la sala indicada (dirección literal de grupo multicast, sin resolver nombres)
+     * Solo se reciben de vuelta los mensajes de la sala por defecto
+     */
+    public CompletableFuture<Void> send(String room, String payload) {
+        MulticastSender current = sender;
+        if (current == null) {
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            future.completeExceptionally(new IllegalStateException("El cliente no está iniciado"));
+            return future;
+        }
+        return current.send(room, payload);
+    }
+    
+    public void addMessageListener(MessageListener listener) {
+        listeners.add(listener);
+    }
+    
+    public void removeMessageListener(MessageListener listener) {
+        listeners.remove(listener);
+    }
+    
+    private void dispatch(ChatMessage message) {
+        for (MessageListener listener : listeners) {
+            listener.onMessage(message);
+        }
+    }
+    
+    /**
+     * Cierre ordenado dentro de SHUTDOWN_TIMEOUT_MILLIS
+     */
+    @Override
+    public void close() {
+        close(SHUTDOWN_TIMEOUT_MILLIS);
+    }
+    
+    /**
+     * Cierre ordenado con un único plazo total:
+     * vacía la cola del emisor con hasta la mitad del plazo (como máximo
+     * MulticastSender.DEFAULT_FLUSH_TIMEOUT_MILLIS) y espera su hilo dentro del plazo, sale del grupo,
+     * cierra el socket del receptor para desbloquearlo y espera su hilo con lo que queda del plazo
+     */
+    public void close(long timeoutMillis) {
+        if (!running.getAndSet(false)) {
+            return;
+        }
+        long begin = System.nanoTime();
+        long deadline = begin + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        
+        if (sender != null) {
+            sender.close(Math.min(MulticastSender.DEFAULT_FLUSH_TIMEOUT_MILLIS, timeoutMillis / 2), timeoutMillis);
+        }
+        if (receiver != null) {
+            receiver.stop();
+        }
+        
+        if (executorService != null && !executorService.isShutdown()) {
+            executorService.shutdown();
+            
+            try {
+                // Esperar que termine el hilo receptor con lo que queda del plazo
+                long remaining = Math.max(0, deadline - System.nanoTime());
+                if (!executorService.awaitTermination(remaining, TimeUnit.NANOSECONDS)) {
+                    executorService.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                executorService.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+        
+        shutdownMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+    }
+    
+    /**
+     * Cierra y vuelve a iniciar el cliente con sockets nuevos, conservando los listeners
+     */
+    public void restart() throws IOException {
+        close();
+        start();
+    }
+    
+    /**
+     * Activa o desactiva los mensajes de estado del emisor y receptor
+     */
+    public void setVerbose(boolean verbose) {
+        this.verbose = verbose;
+        if (receiver != null) {
+            receiver.setVerbose(verbose);
+        }
+        if (sender != null) {
+            sender.setVerbose(verbose);
+        }
+    }
+    
+    public boolean isRunning() {
+        return running.get();
+    }
+    
+    /**
+     * Milisegundos del último start() hasta quedar listo, -1 si nunca inició
+     */
+    public long getStartupMillis() {
+        return startupMillis;
+    }
+    
+    /**
+     * Milisegundos que tomó el último close(), -1 si nunca se cerró
+     */
+    public long getShutdownMillis() {
+        return shutdownMillis;
+    }
+    
+    public String getMulticastAddress() {
+        return multicastAddress;
+    }
+    
+    public int getPort() {
+        return port;
+    }
+    
+    public String getUsername() {
+        return username;
+    }
+    
+    public MulticastReceiver getReceiver() {
+        return receiver;
+    }
+    
+    public MulticastSender getSender() {
+        return sender;
+    }
+}
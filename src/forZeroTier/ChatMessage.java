@@ -0,0 +1,69 @@
+package forZeroTier;
+
+import java.time.Instant;
+
+/**
+ * ChatMessage - Mensaje de chat recibido desde la red multicast
+ * Proyecto: Sistema de Chat Multicast con ZeroTier
+ * Características: Objeto inmutable entregado a los MessageListener registrados
+ */
+public final class ChatMessage {
+    private final String room;
+    private final String senderAddress;
+    private final String username;
+    private final String text;
+    private final Instant timestamp;
+    
+    public ChatMessage(String room, String senderAddress, String rawMessage, Instant timestamp) {
+        this.room = room;
+        this.senderAddress = senderAddress;
+        this.timestamp = timestamp;
+        
+        // Formato en la red: "usuario: mensaje"
+        int separator = rawMessage.indexOf(": ");
+        if (separator > 0) {
+            this.username = rawMessage.substring(0, separator);
+            this.text = rawMessage.substring(separator + 2);
+        } else {
+            this.username = "";
+            this.text = rawMessage;
+        }
+    }
+    
+    /**
+     * Sala (dirección del grupo multicast) en la que se recibió el mensaje
+     */
+    public String getRoom() {
+        return room;
+    }
+    
+    /**
+     * Dirección IP del nodo que envió el mensaje
+     */
+    public String getSenderAddress() {
+        return senderAddress;
+    }
+    
+    /**
+     * Nombre de usuario del emisor, vacío si el mensaje no sigue el formato "usuario: mensaje"
+     */
+    public String getUsername() {
+        return username;
+    }
+    
+    /**
+     * Contenido del mensaje sin el prefijo de usuario
+     */
+    public String getText() {
+        return text;
+    }
+    
+    public Instant getTimestamp() {
+        return timestamp;
+    }
+    
+    @Override
+    public String toString() {
+        return username.isEmpty() ? text : username + ": " + text;
+    }
+}
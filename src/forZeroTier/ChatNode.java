@@ -1,21 +1,18 @@
 package forZeroTier;
 
-import multicast.MulticastReceiver;
-
 import java.util.Scanner;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * ChatNode - Clase principal que ejecuta el sistema de chat multicast
  * Proyecto: Sistema de Chat Multicast con ZeroTier y Concurrencia
- * 
+ *
  * Características implementadas:
  * - Multicast para comunicación en red
  * - Concurrencia con hilos separados para envío y recepción
  * - Compatibilidad con redes virtuales ZeroTier
  * - Gestión automática de recursos
+ * - Interfaz de consola como adaptador sobre ChatClient
  *
  * Créditos:
  * - Creado por: Andrés Alejandro Sánchez Garzón el 29/05/2025
@@ -26,8 +23,8 @@ public class ChatNode {
     private static final String MULTICAST_ADDRESS = "224.0.0.1"; // Dirección multicast válida
     private static final int PORT = 4446;                        // Puerto de comunicación
     
-    private static MulticastReceiver receiver;
-    private static ExecutorService executorService;
+    private static final AtomicBoolean shutdownDone = new AtomicBoolean(false);
+    private static ChatClient client;
     
     public static void main(String[] args) {
         Scanner scanner = new Scanner(System.in);
@@ -56,36 +53,29 @@ public class ChatNode {
         System.out.println("- Usuario: " + username);
         System.out.println();
         
-        // Configurar el pool de hilos para concurrencia
-        executorService = Executors.newFixedThreadPool(2);
-        
         try {
-            // Inicializar y ejecutar el receptor en un hilo separado
-            System.out.println("[SISTEMA] Iniciando receptor de mensajes...");
-            receiver = new MulticastReceiver(MULTICAST_ADDRESS, PORT);
-            executorService.submit(receiver);
-            
-            // Dar tiempo al receptor para inicializarse
-            Thread.sleep(1500);
+            // Inicializar el cliente: receptor en hilo separado y emisor no bloqueante
+            System.out.println("[SISTEMA] Iniciando receptor y emisor de mensajes...");
+            client = new ChatClient(MULTICAST_ADDRESS, PORT, username);
+            client.addMessageListener(ChatNode::printReceived);
             
             // Configurar shutdown hook para cierre limpio
             Runtime.getRuntime().addShutdownHook(new Thread(() -> {
                 shutdown();
             }));
             
-            System.out.println("[SISTEMA] Iniciando emisor de mensajes...");
-            System.out.println("[SISTEMA] ¡Sistema listo! Puede comenzar a enviar mensajes.");
+            // Retorna cuando el receptor ya se unió al grupo
+            client.start();
+            
+            System.out.println("[SISTEMA] ¡Sistema listo en " + client.getStartupMillis() + 
+                " ms! Puede comenzar a enviar mensajes.");
             System.out.println("[INSTRUCCIONES] Escriba 'exit' para salir del programa");
             System.out.println("========================================");
             System.out.println();
             
-            // Inicializar y ejecutar el emisor en el hilo principal
-            MulticastSender sender = new MulticastSender(MULTICAST_ADDRESS, PORT);
-            sender.start(username);
+            // Leer la entrada de usuario en el hilo principal
+            handleUserInput(scanner, username);
             
-        } catch (InterruptedException e) {
-            System.err.println("[ERROR] Interrupción del sistema: " + e.getMessage());
-            Thread.currentThread().interrupt();
         } catch (Exception e) {
             System.err.println("[ERROR] Error al inicializar el sistema: " + e.getMessage());
             e.printStackTrace();
@@ -94,35 +84,67 @@ public class ChatNode {
         }
     }
     
+    /**
+     * Lee mensajes de la consola y los entrega al cliente sin bloquear
+     */
+    private static void handleUserInput(Scanner scanner, String username) {
+        while (scanner.hasNextLine()) {
+            String message = scanner.nextLine();
+            
+            if ("exit".equalsIgnoreCase(message.trim())) {
+                System.out.println("[SISTEMA] Saliendo del chat...");
+                break;
+            }
+            
+            if (!message.trim().isEmpty()) {
+                client.send(message).whenComplete((ignored, error) -> {
+                    if (error != null) {
+                        System.err.println("[ERROR] Error enviando mensaje: " + error.getMessage());
+                    } else {
+                        printSent(username + ": " + message);
+                    }
+                });
+            }
+        }
+    }
+    
+    /**
+     * Muestra un mensaje recibido con formato
+     */
+    private static void printReceived(ChatMessage message) {
+        System.out.println("[RECIBIDO " + currentTimestamp() + "] [" + 
+            message.getSenderAddress() + "] " + message);
+    }
+    
+    /**
+     * Muestra la confirmación de envío
+     */
+    private static void printSent(String fullMessage) {
+        System.out.println("[ENVIADO " + currentTimestamp() + "] " + fullMessage);
+    }
+    
+    private static String currentTimestamp() {
+        return java.time.LocalTime.now().format(
+            java.time.format.DateTimeFormatter.ofPattern("HH:mm:ss"));
+    }
+    
     /**
      * Método para cerrar el sistema de manera ordenada
-     * Implementa el cierre correcto de hilos y recursos
+     * Implementa el cierre correcto de hilos y recursos; solo actúa una vez
+     * aunque lo invoquen tanto el flujo normal como el shutdown hook
      */
     private static void shutdown() {
+        if (!shutdownDone.compareAndSet(false, true)) {
+            return;
+        }
+        
         System.out.println();
         System.out.println("[SISTEMA] Cerrando sistema de chat...");
         
-        try {
-            // Detener el receptor si está activo
-            if (receiver != null) {
-                receiver.run();
-            }
-            
-            // Cerrar el pool de hilos
-            if (executorService != null && !executorService.isShutdown()) {
-                executorService.shutdown();
-                
-                // Esperar que terminen las tareas en ejecución
-                if (!executorService.awaitTermination(5, TimeUnit.SECONDS)) {
-                    System.out.println("[SISTEMA] Forzando cierre de hilos...");
-                    executorService.shutdownNow();
-                }
-            }
-            
-        } catch (InterruptedException e) {
-            System.err.println("[ERROR] Error durante el cierre: " + e.getMessage());
-            executorService.shutdownNow();
-            Thread.currentThread().interrupt();
+        // Detener receptor, emisor y pool de hilos del cliente
+        if (client != null) {
+            client.close();
+            System.out.println("[SISTEMA] Cierre completado en " + client.getShutdownMillis() + " ms");
         }
         
         System.out.println("[SISTEMA] ¡Sistema cerrado correctamente!");
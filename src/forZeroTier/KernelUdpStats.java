@@ -0,0 +1,153 @@
+package forZeroTier;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * KernelUdpStats - Lectura de contadores UDP del kernel de Linux
+ * Proyecto: Sistema de Chat Multicast con ZeroTier
+ * Características: Descartes por socket (/proc/net/udp, columna drops) y errores globales
+ * de buffer de recepción (/proc/net/snmp, RcvbufErrors). En otros sistemas retorna -1.
+ */
+public final class KernelUdpStats {
+    private static final Path UDP_TABLE = Paths.get("/proc/net/udp");
+    private static final Path UDP6_TABLE = Paths.get("/proc/net/udp6");
+    private static final Path SNMP = Paths.get("/proc/net/snmp");
+    private static final Path OWN_FDS = Paths.get("/proc/self/fd");
+    
+    private KernelUdpStats() {
+    }
+    
+    /**
+     * Inodo del único socket UDP de este proceso enlazado al puerto local, sin contar los excluidos
+     * Recorre /proc/self/fd, por lo que debe hacerse una sola vez por socket y guardarse
+     * Retorna null si los contadores no están disponibles o si hay más de un candidato,
+     * para no atribuir a un socket los descartes de otro
+     */
+    public static String findSocketInode(int localPort, Set<String> excluded) {
+        if (localPort <= 0 || !Files.isReadable(UDP_TABLE)) {
+            return null;
+        }
+        
+        try {
+            Set<String> ownInodes = readOwnSocketInodes();
+            ownInodes.removeAll(excluded);
+            if (ownInodes.isEmpty()) {
+                return null;
+            }
+            
+            Set<String> inodes = new HashSet<>();
+            collectInodes(UDP_TABLE, localPort, ownInodes, inodes);
+            if (Files.isReadable(UDP6_TABLE)) {
+                collectInodes(UDP6_TABLE, localPort, ownInodes, inodes);
+            }
+            return inodes.size() == 1 ? inodes.iterator().next() : null;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * Columna drops del socket UDP con el inodo indicado
+     * Retorna -1 si el inodo es null o los contadores no están disponibles
+     */
+    public static long readSocketDrops(String inode) {
+        if (inode == null || !Files.isReadable(UDP_TABLE)) {
+            return -1;
+        }
+        
+        try {
+            long drops = findDrops(UDP_TABLE, inode);
+            if (drops < 0 && Files.isReadable(UDP6_TABLE)) {
+                drops = findDrops(UDP6_TABLE, inode);
+            }
+            return drops;
+        } catch (IOException | RuntimeException e) {
+            return -1;
+        }
+    }
+    
+    /**
+     * Contador global Udp RcvbufErrors del kernel, o -1 si no está disponible
+     */
+    public static long readRcvbufErrors() {
+        if (!Files.isReadable(SNMP)) {
+            return -1;
+        }
+        
+        try {
+            List<String> lines = Files.readAllLines(SNMP);
+            // El archivo alterna una línea de encabezados y una de valores por protocolo
+            for (int i = 0; i + 1 < lines.size(); i++) {
+                if (lines.get(i).startsWith("Udp:") && lines.get(i + 1).startsWith("Udp:")) {
+                    String[] names = lines.get(i).trim().split("\\s+");
+                    String[] values = lines.get(i + 1).trim().split("\\s+");
+                    for (int j = 1; j < names.length && j < values.length; j++) {
+                        if ("RcvbufErrors".equals(names[j])) {
+                            return Long.parseLong(values[j]);
+                        }
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            return -1;
+        }
+        return -1;
+    }
+    
+    private static void collectInodes(Path table, int localPort, Set<String> ownInodes, Set<String> inodes)
+            throws IOException {
+        List<String> lines = Files.readAllLines(table);
+        
+        // Columnas: sl local_address rem_address st tx:rx tr:tm retrnsmt uid timeout inode ref pointer drops
+        for (int i = 1; i < lines.size(); i++) {
+            String[] fields = lines.get(i).trim().split("\\s+");
+            if (fields.length < 13) {
+                continue;
+            }
+            String local = fields[1];
+            int port = Integer.parseInt(local.substring(local.lastIndexOf(':') + 1), 16);
+            if (port == localPort && ownInodes.contains(fields[9])) {
+                inodes.add(fields[9]);
+            }
+        }
+    }
+    
+    private static long findDrops(Path table, String inode) throws IOException {
+        for (String line : Files.readAllLines(table)) {
+            String[] fields = line.trim().split("\\s+");
+            if (fields.length >= 13 && inode.equals(fields[9])) {
+                return Long.parseLong(fields[12]);
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Inodos de los sockets abiertos por este proceso, para no contar sockets ajenos en el mismo puerto
+     */
+    public static Set<String> readOwnSocketInodes() {
+        Set<String> inodes = new HashSet<>();
+        try (DirectoryStream<Path> fds = Files.newDirectoryStream(OWN_FDS)) {
+            for (Path fd : fds) {
+                try {
+                    String target = Files.readSymbolicLink(fd).toString();
+                    if (target.startsWith("socket:[")) {
+                        inodes.add(target.substring(8, target.length() - 1));
+                    }
+                } catch (IOException e) {
+                    // El descriptor pudo cerrarse mientras se recorría
+                }
+            }
+        } catch (IOException e) {
+            inodes.clear();
+        }
+        return inodes;
+    }
+}
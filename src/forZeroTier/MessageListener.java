@@ -0,0 +1,15 @@
+package forZeroTier;
+
+/**
+ * MessageListener - Callback para mensajes entrantes del chat
+ * Proyecto: Sistema de Chat Multicast con ZeroTier
+ * Características: Se invoca desde el hilo receptor, no debe bloquear
+ */
+@FunctionalInterface
+public interface MessageListener {
+    
+    /**
+     * Se invoca por cada mensaje recibido del grupo multicast
+     */
+    void onMessage(ChatMessage message);
+}
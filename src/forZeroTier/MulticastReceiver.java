@@ -2,7 +2,10 @@ package forZeroTier;
 
 import java.io.IOException;
 import java.net.*;
-import java.util.Enumeration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
@@ -14,148 +17,233 @@ public class MulticastReceiver implements Runnable {
     private final String multicastAddress;
     private final int port;
     private final AtomicBoolean running;
-    private MulticastSocket socket;
-    private InetAddress group;
-    private NetworkInterface ztInterface;
-    private int messagesReceived = 0;
+    private final List<MessageListener> listeners;
+    private final ReceiverMetrics metrics;
+    private final CompletableFuture<Void> ready;
+    private volatile MulticastTransport transport;
+    private volatile InetAddress group;
+    private volatile SocketTuner tuner;
+    private volatile boolean verbose = true;
+    private volatile boolean stopRequested = false;
+    private volatile boolean eventDriven = false;
     
     public MulticastReceiver(String multicastAddress, int port) {
+        this(multicastAddress, port, null);
+    }
+    
+    /**
+     * Crea un receptor sobre un transporte dado (por ejemplo, una red simulada)
+     * Si el transporte es null se abre un SocketTransport al iniciar
+     */
+    public MulticastReceiver(String multicastAddress, int port, MulticastTransport transport) {
         this.multicastAddress = multicastAddress;
+        this.transport = transport;
         this.port = port;
         this.running = new AtomicBoolean(false);
+        this.listeners = new CopyOnWriteArrayList<>();
+        this.metrics = new ReceiverMetrics();
+        this.ready = new CompletableFuture<>();
+    }
+    
+    /**
+     * Se completa cuando el receptor se unió al grupo y ya no se pierden mensajes,
+     * o con error si la inicialización falla o el receptor se detiene antes
+     */
+    public CompletableFuture<Void> ready() {
+        return ready;
+    }
+    
+    /**
+     * Registra un callback para los mensajes entrantes
+     */
+    public void addMessageListener(MessageListener listener) {
+        listeners.add(listener);
+    }
+    
+    /**
+     * Elimina un callback registrado previamente
+     */
+    public void removeMessageListener(MessageListener listener) {
+        listeners.remove(listener);
+    }
+    
+    /**
+     * Indica si el transporte entrega los datagramas por callback (red simulada)
+     * En ese caso el receptor se inicia con open() y no necesita un hilo propio
+     */
+    public boolean isEventDriven() {
+        MulticastTransport current = transport;
+        return current != null && current.isEventDriven();
+    }
+    
+    /**
+     * Inicia el receptor sin hilo propio: se une al grupo y el transporte entrega cada
+     * datagrama desde su bucle de eventos. Al retornar, ready() ya está completo
+     */
+    public void open() throws IOException {
+        if (!isEventDriven()) {
+            throw new IllegalStateException("El transporte requiere un hilo receptor, use run()");
+        }
+        eventDriven = true;
+        running.set(true);
+        
+        try {
+            transport.setReceiveHandler(this::onDatagram);
+            initializeMulticastReceiver();
+            if (stopRequested) {
+                throw new SocketException("Receptor detenido antes de estar listo");
+            }
+            ready.complete(null);
+            log("[MULTICAST] Receptor iniciado correctamente");
+            log("[RECEPTOR] Escuchando mensajes en " + multicastAddress + ":" + port);
+            
+        } catch (IOException e) {
+            ready.completeExceptionally(e);
+            cleanup();
+            throw e;
+        }
     }
     
     /**
      * Metodo principal del hilo receptor - Implementa concurrencia
+     * Los transportes dirigidos por eventos se rechazan: su reloj es virtual y un hilo que
+     * los lee en paralelo haría que el resultado dependiera de la planificación
      */
     @Override
     public void run() {
+        if (isEventDriven()) {
+            IllegalStateException e = new IllegalStateException("El transporte entrega datagramas por eventos, use open()");
+            ready.completeExceptionally(e);
+            throw e;
+        }
         running.set(true);
         
         try {
             // Inicializar receptor multicast
             initializeMulticastReceiver();
+            if (stopRequested) {
+                return;
+            }
             
-            System.out.println("[MULTICAST] Receptor iniciado correctamente");
-            System.out.println("[INTERFAZ] " + (ztInterface != null ? 
-                "Usando interfaz ZeroTier: " + ztInterface.getDisplayName() : 
+            // Señal de listo: desde aquí el kernel encola los mensajes del grupo
+            ready.complete(null);
+            
+            log("[MULTICAST] Receptor iniciado correctamente");
+            log("[INTERFAZ] " + (transport.getInterfaceName() != null ? 
+                "Usando interfaz ZeroTier: " + transport.getInterfaceName() : 
                 "Usando interfaz por defecto"));
-            System.out.println("[RECEPTOR] Escuchando mensajes en " + multicastAddress + ":" + port);
-            System.out.println();
+            log("[RECEPTOR] Escuchando mensajes en " + multicastAddress + ":" + port);
+            log("");
             
             // Bucle principal de recepción (Ejecución concurrente)
             receiveMessages();
             
         } catch (IOException e) {
-            System.err.println("[ERROR] Error en MulticastReceiver: " + e.getMessage());
-            e.printStackTrace();
+            if (!stopRequested) {
+                System.err.println("[ERROR] Error en MulticastReceiver: " + e.getMessage());
+                e.printStackTrace();
+            }
+            ready.completeExceptionally(e);
         } finally {
             cleanup();
+            ready.completeExceptionally(new SocketException("Receptor detenido antes de estar listo"));
         }
     }
     
     /**
-     * Inicializa el socket multicast y se une al grupo
+     * Inicializa el transporte multicast y se une al grupo
      */
     private void initializeMulticastReceiver() throws IOException {
-        socket = new MulticastSocket(port);
-        group = InetAddress.getByName(multicastAddress);
+        if (transport == null) {
+            transport = new SocketTransport(port);
+        }
+        // stop() pudo llegar antes de que existiera el transporte
+        if (stopRequested) {
+            return;
+        }
+        InetAddress target = InetAddress.getByName(multicastAddress);
         
-        // Detectar y configurar interfaz ZeroTier
-        ztInterface = detectZeroTierInterface();
-        if (ztInterface != null) {
-            try {
-                socket.setNetworkInterface(ztInterface);
-                
-                // Unirse al grupo multicast en la interfaz específica
-                SocketAddress groupAddress = new InetSocketAddress(group, port);
-                socket.joinGroup(groupAddress, ztInterface);
-                
-                System.out.println("[ZEROTIER] Unido al grupo multicast en interfaz: " + 
-                    ztInterface.getDisplayName());
-                
-            } catch (IOException e) {
-                System.out.println("[ADVERTENCIA] Error configurando ZeroTier, usando método estándar: " + 
-                    e.getMessage());
-                socket.joinGroup(group);
-            }
+        // Buffers, timeout de receive y contadores del kernel
+        tuner = new SocketTuner(transport, metrics);
+        tuner.setVerbose(verbose);
+        tuner.configureReceiver();
+        
+        // Unirse al grupo multicast (en la interfaz ZeroTier si fue detectada)
+        transport.joinGroup(target);
+        group = target;
+        if (transport.getInterfaceName() != null) {
+            log("[ZEROTIER] Unido al grupo multicast en interfaz: " + 
+                transport.getInterfaceName());
         } else {
-            // Método estándar si no se detecta ZeroTier
-            socket.joinGroup(group);
-            System.out.println("[MULTICAST] Unido al grupo usando interfaz por defecto");
+            log("[MULTICAST] Unido al grupo usando interfaz por defecto");
         }
     }
     
-    /**
-     * Detecta automáticamente la interfaz de red ZeroTier
-     */
-    private NetworkInterface detectZeroTierInterface() {
-        try {
-            Enumeration<NetworkInterface> interfaces = NetworkInterface.getNetworkInterfaces();
-            while (interfaces.hasMoreElements()) {
-                NetworkInterface ni = interfaces.nextElement();
-                String name = ni.getName().toLowerCase();
-                String displayName = ni.getDisplayName().toLowerCase();
-                
-                // Buscar interfaces ZeroTier
-                if ((name.contains("zt") || displayName.contains("zerotier") || 
-                     name.startsWith("zt") || displayName.contains("zt")) && 
-                    ni.isUp() && !ni.isLoopback()) {
-                    
-                    // Verificar que tenga direcciones IP
-                    Enumeration<InetAddress> addresses = ni.getInetAddresses();
-                    if (addresses.hasMoreElements()) {
-                        return ni;
-                    }
-                }
-            }
-        } catch (SocketException e) {
-            System.err.println("[ERROR] Error detectando interfaces: " + e.getMessage());
-        }
-        return null;
-    }
-    
     /**
      * Bucle principal de recepción de mensajes (Ejecución concurrente)
+     * El timeout del socket despierta el bucle periódicamente para revisar el estado y
+     * los contadores del kernel; stop() cierra el transporte y desbloquea receive al instante
      */
     private void receiveMessages() {
         byte[] buffer = new byte[1024];
         
-        while (running.get()) {
+        while (running.get() && !Thread.currentThread().isInterrupted()) {
             try {
                 DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
-                socket.receive(packet);
+                transport.receive(packet);
                 
-                // Procesar mensaje recibido
-                processReceivedMessage(packet);
-                messagesReceived++;
+                // Un datagrama que llega durante el cierre ya no se entrega
+                if (!running.get()) {
+                    break;
+                }
+                
+                // Procesar mensaje recibido, salvo que se esté descartando carga
+                if (tuner.onMessage(packet.getLength())) {
+                    processReceivedMessage(packet);
+                }
                 
             } catch (SocketTimeoutException e) {
                 // Timeout normal, continuar
-                continue;
             } catch (IOException e) {
                 if (running.get()) {
                     System.err.println("[ERROR] Error recibiendo mensaje: " + e.getMessage());
                 }
                 break;
             }
+            
+            tuner.tick();
+        }
+    }
+    
+    /**
+     * Callback del transporte dirigido por eventos: mismo camino que el bucle de recepción
+     * Retorna false si el datagrama se descartó sin entregarse a los listeners
+     */
+    private boolean onDatagram(DatagramPacket packet) {
+        SocketTuner current = tuner;
+        if (!running.get() || current == null) {
+            return false;
         }
+        boolean dispatched = current.onMessage(packet.getLength());
+        if (dispatched) {
+            processReceivedMessage(packet);
+        }
+        current.tick();
+        return dispatched;
     }
     
     /**
-     * Procesa un mensaje recibido
+     * Procesa un mensaje recibido y lo entrega a los listeners registrados
      */
     private void processReceivedMessage(DatagramPacket packet) {
         try {
             String message = new String(packet.getData(), 0, packet.getLength(), "UTF-8");
             String senderIP = packet.getAddress().getHostAddress();
             
-            // Obtener timestamp
-            String timestamp = java.time.LocalTime.now().format(
-                java.time.format.DateTimeFormatter.ofPattern("HH:mm:ss"));
-            
-            // Mostrar mensaje recibido con formato
-            System.out.println("[RECIBIDO " + timestamp + "] [" + senderIP + "] " + message);
+            ChatMessage chatMessage = new ChatMessage(multicastAddress, senderIP, message, Instant.now());
+            for (MessageListener listener : listeners) {
+                listener.onMessage(chatMessage);
+            }
             
         } catch (Exception e) {
             System.err.println("[ERROR] Error procesando mensaje: " + e.getMessage());
@@ -164,22 +252,39 @@ public class MulticastReceiver implements Runnable {
     
     /**
      * Detiene el receptor de manera segura
+     * Cierra el transporte para desbloquear el receive en curso sin esperar al timeout
      */
     public void stop() {
-        running.set(false);
+        stopRequested = true;
+        boolean wasRunning = running.getAndSet(false);
+        if (eventDriven) {
+            // Sin hilo receptor que ejecute cleanup() al salir del bucle
+            if (wasRunning) {
+                cleanup();
+            }
+        } else {
+            closeTransport();
+        }
+    }
+    
+    /**
+     * Sale del grupo y cierra el transporte una sola vez, ya sea desde stop() o desde el hilo receptor
+     */
+    private synchronized void closeTransport() {
+        MulticastTransport current = transport;
+        if (current == null || current.isClosed()) {
+            return;
+        }
         
         try {
-            if (socket != null && !socket.isClosed()) {
+            if (group != null) {
                 // Salir del grupo multicast antes de cerrar
-                if (ztInterface != null) {
-                    SocketAddress groupAddress = new InetSocketAddress(group, port);
-                    socket.leaveGroup(groupAddress, ztInterface);
-                } else {
-                    socket.leaveGroup(group);
-                }
+                current.leaveGroup(group);
             }
         } catch (IOException e) {
             System.err.println("[ADVERTENCIA] Error saliendo del grupo multicast: " + e.getMessage());
+        } finally {
+            current.close();
         }
     }
     
@@ -187,12 +292,30 @@ public class MulticastReceiver implements Runnable {
      * Limpia recursos al cerrar
      */
     private void cleanup() {
-        if (socket != null && !socket.isClosed()) {
-            socket.close();
-        }
+        running.set(false);
+        closeTransport();
         
-        System.out.println("[MULTICAST] Receptor cerrado correctamente");
-        System.out.println("[ESTADÍSTICAS] Mensajes recibidos: " + messagesReceived);
+        log("[MULTICAST] Receptor cerrado correctamente");
+        log("[ESTADÍSTICAS] Mensajes recibidos: " + metrics.getMessagesReceived() + 
+            ", descartados por sobrecarga: " + metrics.getMessagesShed() + 
+            ", descartes del kernel: " + formatCounter(metrics.getKernelDrops()));
+    }
+    
+    private static String formatCounter(long value) {
+        return value >= 0 ? String.valueOf(value) : "no disponible";
+    }
+    
+    private void log(String message) {
+        if (verbose) {
+            System.out.println(message);
+        }
+    }
+    
+    /**
+     * Activa o desactiva los mensajes de estado en consola
+     */
+    public void setVerbose(boolean verbose) {
+        this.verbose = verbose;
     }
     
     /**
@@ -204,9 +327,16 @@ public class MulticastReceiver implements Runnable {
         System.out.println("Dirección Multicast: " + multicastAddress);
         System.out.println("Puerto: " + port);
         System.out.println("Estado: " + (running.get() ? "Activo" : "Inactivo"));
-        System.out.println("Mensajes recibidos: " + messagesReceived);
-        System.out.println("Interfaz ZeroTier: " + (ztInterface != null ? 
-            ztInterface.getDisplayName() : "No detectada"));
+        System.out.println("Mensajes recibidos: " + metrics.getMessagesReceived());
+        System.out.println("Tasa de mensajes: " + String.format("%.1f", metrics.getMessageRate()) + " msg/s");
+        System.out.println("Descartados por sobrecarga: " + metrics.getMessagesShed() + 
+            (metrics.isShedding() ? " (descartando)" : ""));
+        System.out.println("Descartes del kernel (socket): " + formatCounter(metrics.getKernelDrops()));
+        System.out.println("RcvbufErrors (sistema): " + formatCounter(metrics.getRcvbufErrors()));
+        System.out.println("SO_RCVBUF: " + formatCounter(metrics.getReceiveBufferSize()) + " bytes, " + 
+            "ajustes: " + metrics.getBufferResizes());
+        System.out.println("Interfaz ZeroTier: " + (transport != null && transport.getInterfaceName() != null ? 
+            transport.getInterfaceName() : "No detectada"));
         System.out.println("=================================");
         System.out.println();
     }
@@ -217,4 +347,12 @@ public class MulticastReceiver implements Runnable {
     public boolean isRunning() {
         return running.get();
     }
+    
+    public long getMessagesReceived() {
+        return metrics.getMessagesReceived();
+    }
+    
+    public ReceiverMetrics getMetrics() {
+        return metrics;
+    }
 }
\ No newline at end of file
@@ -2,10 +2,14 @@ package forZeroTier;
 
 import java.io.IOException;
 import java.net.*;
-import java.util.Scanner;
-import java.util.Enumeration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
@@ -14,153 +18,244 @@ import java.util.concurrent.atomic.AtomicBoolean;
  * Características: Concurrencia, Multicast, Detección automática de interfaz ZeroTier
  */
 public class MulticastSender {
+    public static final long DEFAULT_FLUSH_TIMEOUT_MILLIS = 50;  // Plazo máximo para vaciar la cola al cerrar
+    
     private final String multicastAddress;
     private final int port;
-    private final BlockingQueue<String> messageQueue;
+    private final BlockingQueue<OutgoingMessage> messageQueue;
     private final AtomicBoolean running;
-    private MulticastSocket socket;
+    private volatile MulticastTransport transport;
     private InetAddress group;
-    private NetworkInterface ztInterface;
+    private Thread messageSenderThread;
+    private volatile OutgoingMessage inFlight;      // Mensaje dentro de transport.send en el hilo de envío
+    private String username;
+    private volatile boolean eventDriven = false;
+    private volatile boolean verbose = true;
     
     public MulticastSender(String multicastAddress, int port) {
+        this(multicastAddress, port, null);
+    }
+    
+    /**
+     * Crea un emisor sobre un transporte dado (por ejemplo, una red simulada)
+     * Si el transporte es null se abre un SocketTransport al iniciar
+     */
+    public MulticastSender(String multicastAddress, int port, MulticastTransport transport) {
         this.multicastAddress = multicastAddress;
+        this.transport = transport;
         this.port = port;
         this.messageQueue = new LinkedBlockingQueue<>();
         this.running = new AtomicBoolean(false);
     }
     
     /**
-     * Inicia el sistema de envío de mensajes multicast
-     * Implementa concurrencia con hilos separados para entrada de usuario y envío
+     * Abre el socket e inicia el hilo de envío sin bloquear al llamador
      */
-    public void start(String username) {
-        running.set(true);
+    public void open(String username) throws IOException {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("El emisor ya está iniciado");
+        }
+        this.username = username;
         
         try {
             // Inicializar socket y configuración multicast
             initializeMulticast();
-            
-            System.out.println("[MULTICAST] Emisor iniciado correctamente");
-            System.out.println("[INTERFAZ] " + (ztInterface != null ? 
-                "Usando interfaz ZeroTier: " + ztInterface.getDisplayName() : 
-                "Usando interfaz por defecto"));
-            System.out.println();
-            
-            // Crear hilo para procesamiento de mensajes (Concurrencia)
-            Thread messageSenderThread = new Thread(() -> processMessageQueue(username));
-            messageSenderThread.setName("MessageSender-Thread");
-            messageSenderThread.setDaemon(true);
-            messageSenderThread.start();
-            
-            // Hilo principal para entrada de usuario
-            handleUserInput();
-            
         } catch (IOException e) {
-            System.err.println("[ERROR] Error al inicializar MulticastSender: " + e.getMessage());
-            e.printStackTrace();
-        } finally {
-            cleanup();
+            running.set(false);
+            throw e;
+        }
+        
+        log("[MULTICAST] Emisor iniciado correctamente");
+        log("[INTERFAZ] " + (transport.getInterfaceName() != null ? 
+            "Usando interfaz ZeroTier: " + transport.getInterfaceName() : 
+            "Usando interfaz por defecto"));
+        log("");
+        
+        if (transport.isEventDriven()) {
+            // Red simulada: send no bloquea, se envía en el hilo del llamador sin hilo propio
+            synchronized (messageQueue) {
+                eventDriven = true;
+                OutgoingMessage pending;
+                while ((pending = messageQueue.poll()) != null) {
+                    sendOrComplete(pending);
+                }
+            }
+            return;
         }
+        
+        // Crear hilo para procesamiento de mensajes (Concurrencia)
+        messageSenderThread = new Thread(this::processMessageQueue);
+        messageSenderThread.setName("MessageSender-Thread");
+        messageSenderThread.setDaemon(true);
+        messageSenderThread.start();
     }
     
     /**
-     * Inicializa la configuración multicast y detecta interfaz ZeroTier
+     * Encola un mensaje para el grupo por defecto
      */
-    private void initializeMulticast() throws IOException {
-        socket = new MulticastSocket();
-        group = InetAddress.getByName(multicastAddress);
+    public CompletableFuture<Void> send(String message) {
+        return send(multicastAddress, message);
+    }
+    
+    /**
+     * Encola un mensaje para el grupo multicast indicado (sala)
+     * La sala debe ser una dirección multicast literal: no se resuelven nombres para no bloquear al llamador
+     * El futuro se completa cuando el datagrama sale por el socket
+     */
+    public CompletableFuture<Void> send(String room, String message) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        
+        InetAddress target;
+        try {
+            target = multicastAddress.equals(room) && group != null ? group : parseMulticastLiteral(room);
+        } catch (UnknownHostException | IllegalArgumentException e) {
+            future.completeExceptionally(e);
+            return future;
+        }
         
-        // Detectar y configurar interfaz ZeroTier
-        ztInterface = detectZeroTierInterface();
-        if (ztInterface != null) {
+        // Mismo candado que close(): tras el cierre ningún mensaje queda en la cola sin respuesta
+        synchronized (messageQueue) {
+            if (!running.get()) {
+                future.completeExceptionally(new IllegalStateException("El emisor no está iniciado"));
+                return future;
+            }
+            OutgoingMessage outgoing = new OutgoingMessage(target, message, future);
+            if (eventDriven) {
+                sendOrComplete(outgoing);
+            } else {
+                messageQueue.offer(outgoing);
+            }
+        }
+        return future;
+    }
+    
+    /**
+     * Vacía la cola con el plazo por defecto y cierra el socket
+     */
+    public void close() {
+        close(DEFAULT_FLUSH_TIMEOUT_MILLIS);
+    }
+    
+    /**
+     * Deja de aceptar mensajes, espera a que se envíen los encolados hasta el plazo
+     * indicado y luego detiene el hilo de envío y cierra el socket
+     */
+    public void close(long flushTimeoutMillis) {
+        close(flushTimeoutMillis, flushTimeoutMillis);
+    }
+    
+    /**
+     * Como close(flushTimeoutMillis), pero tras detener el hilo de envío lo espera hasta completar
+     * timeoutMillis desde el inicio del cierre antes de cerrar el socket, por si está dentro de un
+     * envío o del callback de un futuro. Un mensaje que sigue a medio enviar se cuenta como no enviado
+     */
+    public void close(long flushTimeoutMillis, long timeoutMillis) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(flushTimeoutMillis, timeoutMillis));
+        Thread senderThread = messageSenderThread;
+        boolean wasRunning;
+        synchronized (messageQueue) {
+            wasRunning = running.getAndSet(false);
+        }
+        
+        if (wasRunning && senderThread != null && senderThread.isAlive()) {
+            // Marcador al final de la cola: al procesarlo ya se envió todo lo anterior
+            OutgoingMessage flushMarker = new OutgoingMessage(null, null, new CompletableFuture<>());
+            messageQueue.offer(flushMarker);
+            
             try {
-                socket.setNetworkInterface(ztInterface);
-                System.out.println("[ZEROTIER] Interfaz detectada: " + ztInterface.getDisplayName());
-            } catch (SocketException e) {
-                System.out.println("[ADVERTENCIA] No se pudo configurar interfaz ZeroTier: " + e.getMessage());
+                flushMarker.future.get(flushTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                // Lo que siga en la cola se descarta en cleanup()
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                // El marcador nunca se completa con error
+            }
+            
+            // El socket no se cierra mientras el hilo de envío siga dentro de él, salvo que se agote el plazo
+            senderThread.interrupt();
+            try {
+                TimeUnit.NANOSECONDS.timedJoin(senderThread, Math.max(0, deadline - System.nanoTime()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
         }
         
-        // Configurar TTL para alcance en red
-        try {
-            socket.setTimeToLive(255);
-        } catch (IOException e) {
-            System.out.println("[ADVERTENCIA] No se pudo configurar TTL: " + e.getMessage());
+        int unsent = cleanup();
+        if (unsent > 0 && verbose) {
+            System.err.println("[ADVERTENCIA] Plazo de cierre agotado, mensajes sin enviar: " + unsent);
         }
     }
     
     /**
-     * Detecta automáticamente la interfaz de red ZeroTier
+     * Inicializa el transporte multicast (detecta la interfaz ZeroTier si es un socket real)
      */
-    private NetworkInterface detectZeroTierInterface() {
-        try {
-            Enumeration<NetworkInterface> interfaces = NetworkInterface.getNetworkInterfaces();
-            while (interfaces.hasMoreElements()) {
-                NetworkInterface ni = interfaces.nextElement();
-                String name = ni.getName().toLowerCase();
-                String displayName = ni.getDisplayName().toLowerCase();
-                
-                // Buscar interfaces ZeroTier por nombre
-                if ((name.contains("zt") || displayName.contains("zerotier") || 
-                     name.startsWith("zt") || displayName.contains("zt")) && 
-                    ni.isUp() && !ni.isLoopback()) {
-                    
-                    // Verificar que tenga direcciones IP asignadas
-                    Enumeration<InetAddress> addresses = ni.getInetAddresses();
-                    if (addresses.hasMoreElements()) {
-                        return ni;
-                    }
-                }
-            }
-        } catch (SocketException e) {
-            System.err.println("[ERROR] Error detectando interfaces: " + e.getMessage());
+    private void initializeMulticast() throws IOException {
+        if (transport == null) {
+            transport = new SocketTransport(0);
+        }
+        group = InetAddress.getByName(multicastAddress);
+        SocketTuner.configureSender(transport);
+        
+        if (transport.getInterfaceName() != null) {
+            log("[ZEROTIER] Interfaz detectada: " + transport.getInterfaceName());
         }
-        return null;
     }
     
     /**
-     * Maneja la entrada de usuario en el hilo principal
+     * Convierte una sala en dirección multicast sin consultar DNS
+     * IPv4 se arma byte a byte; IPv6 va entre corchetes para que getByName solo acepte el literal
      */
-    private void handleUserInput() {
-        Scanner scanner = new Scanner(System.in);
-        System.out.println("Escriba sus mensajes (escriba 'exit' para salir):");
+    private static InetAddress parseMulticastLiteral(String room) throws UnknownHostException {
+        if (room == null || room.isEmpty()) {
+            throw new IllegalArgumentException("Sala vacía");
+        }
         
-        while (running.get()) {
-            try {
-                String message = scanner.nextLine();
-                
-                if ("exit".equalsIgnoreCase(message.trim())) {
-                    System.out.println("[SISTEMA] Saliendo del chat...");
-                    running.set(false);
-                    break;
-                }
-                
-                if (!message.trim().isEmpty()) {
-                    // Agregar mensaje a la cola para procesamiento concurrente
-                    messageQueue.offer(message);
+        InetAddress address;
+        if (room.indexOf(':') >= 0) {
+            address = InetAddress.getByName("[" + room + "]");
+        } else {
+            String[] parts = room.split("\\.", -1);
+            if (parts.length != 4) {
+                throw new IllegalArgumentException("La sala debe ser una dirección multicast literal: " + room);
+            }
+            byte[] bytes = new byte[4];
+            for (int i = 0; i < 4; i++) {
+                if (parts[i].isEmpty() || parts[i].length() > 3 || !parts[i].chars().allMatch(c -> c >= '0' && c <= '9')) {
+                    throw new IllegalArgumentException("La sala debe ser una dirección multicast literal: " + room);
                 }
-                
-            } catch (Exception e) {
-                if (running.get()) {
-                    System.err.println("[ERROR] Error leyendo entrada: " + e.getMessage());
+                int octet = Integer.parseInt(parts[i]);
+                if (octet > 255) {
+                    throw new IllegalArgumentException("La sala debe ser una dirección multicast literal: " + room);
                 }
+                bytes[i] = (byte) octet;
             }
+            address = InetAddress.getByAddress(bytes);
         }
+        
+        if (!address.isMulticastAddress()) {
+            throw new IllegalArgumentException("La sala no es una dirección multicast: " + room);
+        }
+        return address;
     }
     
     /**
      * Procesa la cola de mensajes en hilo separado (Implementación de Concurrencia)
      */
-    private void processMessageQueue(String username) {
-        while (running.get()) {
+    private void processMessageQueue() {
+        while (!Thread.currentThread().isInterrupted()) {
             try {
                 // Esperar por mensajes en la cola (operación bloqueante)
-                String message = messageQueue.take();
+                OutgoingMessage outgoing = messageQueue.take();
                 
-                if (message != null && !message.trim().isEmpty()) {
-                    sendMulticastMessage(username, message);
+                if (outgoing.isFlushMarker()) {
+                    // Cola vaciada durante el cierre
+                    outgoing.future.complete(null);
+                    break;
                 }
                 
+                sendOrComplete(outgoing);
+                
             } catch (InterruptedException e) {
                 // Hilo interrumpido, salir del bucle
                 Thread.currentThread().interrupt();
@@ -171,40 +266,103 @@ public class MulticastSender {
         }
     }
     
+    /**
+     * Envía el mensaje si tiene contenido; los mensajes vacíos se completan sin enviarse
+     */
+    private void sendOrComplete(OutgoingMessage outgoing) {
+        if (outgoing.message != null && !outgoing.message.trim().isEmpty()) {
+            sendMulticastMessage(outgoing);
+        } else {
+            outgoing.future.complete(null);
+        }
+    }
+    
     /**
      * Envía mensaje multicast a la red
      */
-    private void sendMulticastMessage(String username, String message) {
+    private void sendMulticastMessage(OutgoingMessage outgoing) {
         try {
-            String fullMessage = username + ": " + message;
+            String fullMessage = username + ": " + outgoing.message;
             byte[] buffer = fullMessage.getBytes("UTF-8");
             
             DatagramPacket packet = new DatagramPacket(
-                buffer, buffer.length, group, port);
-            
-            socket.send(packet);
-            
-            // Mostrar confirmación de envío
-            String timestamp = java.time.LocalTime.now().format(
-                java.time.format.DateTimeFormatter.ofPattern("HH:mm:ss"));
-            System.out.println("[ENVIADO " + timestamp + "] " + fullMessage);
+                buffer, buffer.length, outgoing.group, port);
+                
+            inFlight = outgoing;
+            try {
+                transport.send(packet);
+            } finally {
+                inFlight = null;
+            }
+            outgoing.future.complete(null);
             
         } catch (IOException e) {
-            System.err.println("[ERROR] Error enviando mensaje: " + e.getMessage());
+            // Durante el cierre el socket puede cerrarse bajo un envío; ese mensaje ya se contó en cleanup()
+            if (running.get()) {
+                System.err.println("[ERROR] Error enviando mensaje: " + e.getMessage());
+            }
+            outgoing.future.completeExceptionally(e);
         }
     }
     
     /**
      * Limpia recursos al cerrar
+     * Retorna la cantidad de mensajes que quedaron sin enviar
      */
-    private void cleanup() {
-        running.set(false);
+    private int cleanup() {
+        synchronized (messageQueue) {
+            running.set(false);
+        }
         
-        if (socket != null && !socket.isClosed()) {
-            socket.close();
+        Thread senderThread = messageSenderThread;
+        if (senderThread != null) {
+            senderThread.interrupt();
+        }
+        
+        // Los mensajes que no llegaron a enviarse se notifican como fallidos. Se vacía la cola en bloque
+        // y con una sola excepción, porque con colas largas el costo por mensaje domina el cierre
+        List<OutgoingMessage> pending = new ArrayList<>();
+        messageQueue.drainTo(pending);
+        SocketException closed = new SocketException("Emisor cerrado");
+        int unsent = 0;
+        OutgoingMessage sending = inFlight;
+        if (sending != null && senderThread != null && senderThread.isAlive()) {
+            // El hilo sigue dentro de transport.send: el socket se cierra bajo ese envío
+            sending.future.completeExceptionally(closed);
+            unsent++;
+        }
+        for (OutgoingMessage outgoing : pending) {
+            if (!outgoing.isFlushMarker()) {
+                outgoing.future.completeExceptionally(closed);
+                unsent++;
+            }
         }
         
-        System.out.println("[MULTICAST] Emisor cerrado correctamente");
+        if (transport != null && !transport.isClosed()) {
+            transport.close();
+            log("[MULTICAST] Emisor cerrado correctamente");
+        }
+        return unsent;
+    }
+    
+    private void log(String message) {
+        if (verbose) {
+            System.out.println(message);
+        }
+    }
+    
+    /**
+     * Activa o desactiva los mensajes de estado en consola
+     */
+    public void setVerbose(boolean verbose) {
+        this.verbose = verbose;
+    }
+    
+    /**
+     * Verifica si el emisor está activo
+     */
+    public boolean isRunning() {
+        return running.get();
     }
     
     /**
@@ -217,9 +375,28 @@ public class MulticastSender {
         System.out.println("Puerto: " + port);
         System.out.println("Estado: " + (running.get() ? "Activo" : "Inactivo"));
         System.out.println("Mensajes en cola: " + messageQueue.size());
-        System.out.println("Interfaz ZeroTier: " + (ztInterface != null ? 
-            ztInterface.getDisplayName() : "No detectada"));
+        System.out.println("Interfaz ZeroTier: " + (transport != null && transport.getInterfaceName() != null ? 
+            transport.getInterfaceName() : "No detectada"));
         System.out.println("==============================");
         System.out.println();
     }
-}
\ No newline at end of file
+    
+    /**
+     * Mensaje pendiente de envío junto con el futuro que notifica al llamador
+     */
+    private static final class OutgoingMessage {
+        private final InetAddress group;
+        private final String message;
+        private final CompletableFuture<Void> future;
+        
+        private OutgoingMessage(InetAddress group, String message, CompletableFuture<Void> future) {
+            this.group = group;
+            this.message = message;
+            this.future = future;
+        }
+        
+        private boolean isFlushMarker() {
+            return group == null && message == null;
+        }
+    }
+}
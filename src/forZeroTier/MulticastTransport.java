@@ -0,0 +1,110 @@
+package forZeroTier;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.util.function.Predicate;
+
+/**
+ * MulticastTransport - Abstracción del transporte multicast usado por emisor y receptor
+ * Proyecto: Sistema de Chat Multicast con ZeroTier
+ * Características: Permite sustituir el MulticastSocket real por una red simulada en memoria
+ */
+public interface MulticastTransport extends Closeable {
+    
+    /**
+     * Se une al grupo multicast para empezar a recibir sus datagramas
+     */
+    void joinGroup(InetAddress group) throws IOException;
+    
+    /**
+     * Abandona el grupo multicast
+     */
+    void leaveGroup(InetAddress group) throws IOException;
+    
+    /**
+     * Envía un datagrama a la dirección y puerto indicados en el paquete
+     */
+    void send(DatagramPacket packet) throws IOException;
+    
+    /**
+     * Espera (bloqueante) el siguiente datagrama y lo copia en el paquete
+     */
+    void receive(DatagramPacket packet) throws IOException;
+    
+    /**
+     * Tiempo máximo de espera de receive en milisegundos (0 = sin límite)
+     * Al vencer, receive lanza SocketTimeoutException
+     */
+    void setSoTimeout(int timeoutMillis) throws IOException;
+    
+    /**
+     * Solicita el tamaño del buffer de recepción (SO_RCVBUF)
+     */
+    void setReceiveBufferSize(int size) throws IOException;
+    
+    /**
+     * Tamaño concedido del buffer de recepción, sin el doble que Linux reporta por contabilidad interna
+     */
+    int getReceiveBufferSize() throws IOException;
+    
+    void setSendBufferSize(int size) throws IOException;
+    
+    int getSendBufferSize() throws IOException;
+    
+    /**
+     * Habilita que los datagramas enviados vuelvan a los receptores del mismo host (IP_MULTICAST_LOOP)
+     */
+    void setLoopbackEnabled(boolean enabled) throws IOException;
+    
+    /**
+     * Datagramas descartados para este socket por buffer lleno, o -1 si no se puede medir
+     */
+    long getReceiveDrops();
+    
+    /**
+     * Errores de buffer de recepción acumulados del sistema (en Linux, Udp RcvbufErrors de todo el host),
+     * o -1 si no se puede medir
+     */
+    long getRcvbufErrors();
+    
+    int getLocalPort();
+    
+    /**
+     * Nombre de la interfaz ZeroTier en uso, o null si se usa la interfaz por defecto
+     */
+    String getInterfaceName();
+    
+    boolean isClosed();
+    
+    /**
+     * Indica si el transporte entrega los datagramas desde su propio bucle de eventos (red simulada)
+     * En ese caso send no bloquea y la recepción usa setReceiveHandler, sin hilos por nodo
+     */
+    default boolean isEventDriven() {
+        return false;
+    }
+    
+    /**
+     * Registra el callback que recibe cada datagrama desde el bucle de eventos del transporte
+     * El callback retorna false si descartó el datagrama sin procesarlo (descarte de carga), de modo
+     * que el transporte solo le cobra la lectura del socket. Solo lo soportan los transportes con isEventDriven()
+     */
+    default void setReceiveHandler(Predicate<DatagramPacket> handler) {
+        throw new UnsupportedOperationException("El transporte no entrega datagramas por callback");
+    }
+    
+    /**
+     * Reloj del transporte en nanosegundos; la red simulada usa su reloj virtual
+     */
+    default long nanoTime() {
+        return System.nanoTime();
+    }
+    
+    /**
+     * Cierra el transporte, desbloqueando cualquier receive en curso
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,102 @@
+package forZeroTier;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ReceiverMetrics - Métricas del camino de recepción
+ * Proyecto: Sistema de Chat Multicast con ZeroTier
+ * Características: Contadores seguros entre hilos, actualizados por el receptor y su SocketTuner
+ */
+public class ReceiverMetrics {
+    private final AtomicLong messagesReceived = new AtomicLong();
+    private final AtomicLong bytesReceived = new AtomicLong();
+    private final AtomicLong messagesShed = new AtomicLong();
+    private final AtomicLong bufferResizes = new AtomicLong();
+    private volatile long kernelDrops = -1;
+    private volatile long rcvbufErrors = -1;
+    private volatile int receiveBufferSize = -1;
+    private volatile double messageRate = 0.0;
+    private volatile boolean shedding = false;
+    
+    void recordMessage(int bytes) {
+        messagesReceived.incrementAndGet();
+        bytesReceived.addAndGet(bytes);
+    }
+    
+    void recordShed() {
+        messagesShed.incrementAndGet();
+    }
+    
+    void recordResize(int newReceiveBufferSize) {
+        bufferResizes.incrementAndGet();
+        receiveBufferSize = newReceiveBufferSize;
+    }
+    
+    void setKernelDrops(long kernelDrops) {
+        this.kernelDrops = kernelDrops;
+    }
+    
+    void setRcvbufErrors(long rcvbufErrors) {
+        this.rcvbufErrors = rcvbufErrors;
+    }
+    
+    void setReceiveBufferSize(int receiveBufferSize) {
+        this.receiveBufferSize = receiveBufferSize;
+    }
+    
+    void setMessageRate(double messageRate) {
+        this.messageRate = messageRate;
+    }
+    
+    void setShedding(boolean shedding) {
+        this.shedding = shedding;
+    }
+    
+    public long getMessagesReceived() {
+        return messagesReceived.get();
+    }
+    
+    public long getBytesReceived() {
+        return bytesReceived.get();
+    }
+    
+    /**
+     * Mensajes leídos del socket pero no entregados a los listeners por sobrecarga
+     */
+    public long getMessagesShed() {
+        return messagesShed.get();
+    }
+    
+    public long getBufferResizes() {
+        return bufferResizes.get();
+    }
+    
+    /**
+     * Descartes del kernel para el socket del receptor, -1 si no se pueden medir
+     */
+    public long getKernelDrops() {
+        return kernelDrops;
+    }
+    
+    /**
+     * Errores de buffer del sistema desde que inició el receptor (RcvbufErrors en Linux), -1 si no se pueden medir
+     */
+    public long getRcvbufErrors() {
+        return rcvbufErrors;
+    }
+    
+    public int getReceiveBufferSize() {
+        return receiveBufferSize;
+    }
+    
+    /**
+     * Mensajes por segundo (promedio móvil exponencial)
+     */
+    public double getMessageRate() {
+        return messageRate;
+    }
+    
+    public boolean isShedding() {
+        return shedding;
+    }
+}
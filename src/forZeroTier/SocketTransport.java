@@ -0,0 +1,204 @@
+package forZeroTier;
+
+import java.io.IOException;
+import java.net.*;
+import java.util.Enumeration;
+import java.util.Set;
+
+/**
+ * SocketTransport - Transporte multicast real sobre MulticastSocket
+ * Proyecto: Sistema de Chat Multicast con ZeroTier
+ * Características: Multicast UDP, Detección automática de interfaz ZeroTier
+ */
+public class SocketTransport implements MulticastTransport {
+    private static final int BUFFER_PROBE_SIZE = 16384;
+    
+    // Linux duplica SO_RCVBUF/SO_SNDBUF por la contabilidad del kernel y getsockopt retorna el doble;
+    // se comprueba una vez con un socket de prueba porque no todos los kernels lo hacen
+    private static final boolean KERNEL_DOUBLES_BUFFERS = detectBufferDoubling();
+    
+    // Serializa la creación de sockets con puerto fijo: entre la lista de inodos previa y la
+    // posterior al enlace no puede aparecer otro socket del proceso en el mismo puerto
+    private static final Object BIND_LOCK = new Object();
+    
+    private final int port;
+    private final MulticastSocket socket;
+    private final NetworkInterface ztInterface;
+    private final String socketInode;
+    
+    /**
+     * Crea un transporte enlazado al puerto indicado (0 para un puerto efímero de envío)
+     */
+    public SocketTransport(int port) throws IOException {
+        this.port = port;
+        if (port > 0) {
+            // Otros sockets del proceso pueden compartir el puerto: el inodo propio es el que aparece al crearlo
+            synchronized (BIND_LOCK) {
+                Set<String> existingInodes = KernelUdpStats.readOwnSocketInodes();
+                this.socket = new MulticastSocket(port);
+                this.socketInode = KernelUdpStats.findSocketInode(port, existingInodes);
+            }
+        } else {
+            // Socket de envío: sus descartes de recepción no se miden
+            this.socket = new MulticastSocket();
+            this.socketInode = null;
+        }
+        
+        // Detectar y configurar interfaz ZeroTier
+        NetworkInterface detected = detectZeroTierInterface();
+        if (detected != null) {
+            try {
+                socket.setNetworkInterface(detected);
+            } catch (SocketException e) {
+                System.out.println("[ADVERTENCIA] No se pudo configurar interfaz ZeroTier: " + e.getMessage());
+                detected = null;
+            }
+        }
+        this.ztInterface = detected;
+        
+        // Configurar TTL para alcance en red
+        try {
+            socket.setTimeToLive(255);
+        } catch (IOException e) {
+            System.out.println("[ADVERTENCIA] No se pudo configurar TTL: " + e.getMessage());
+        }
+    }
+    
+    @Override
+    public void joinGroup(InetAddress group) throws IOException {
+        if (ztInterface != null) {
+            try {
+                // Unirse al grupo multicast en la interfaz específica
+                socket.joinGroup(new InetSocketAddress(group, port), ztInterface);
+                return;
+            } catch (IOException e) {
+                System.out.println("[ADVERTENCIA] Error configurando ZeroTier, usando método estándar: " + 
+                    e.getMessage());
+            }
+        }
+        // Método estándar si no se detecta ZeroTier
+        socket.joinGroup(group);
+    }
+    
+    @Override
+    public void leaveGroup(InetAddress group) throws IOException {
+        if (ztInterface != null) {
+            socket.leaveGroup(new InetSocketAddress(group, port), ztInterface);
+        } else {
+            socket.leaveGroup(group);
+        }
+    }
+    
+    @Override
+    public void send(DatagramPacket packet) throws IOException {
+        socket.send(packet);
+    }
+    
+    @Override
+    public void receive(DatagramPacket packet) throws IOException {
+        socket.receive(packet);
+    }
+    
+    @Override
+    public void setSoTimeout(int timeoutMillis) throws IOException {
+        socket.setSoTimeout(timeoutMillis);
+    }
+    
+    @Override
+    public void setReceiveBufferSize(int size) throws IOException {
+        socket.setReceiveBufferSize(size);
+    }
+    
+    @Override
+    public int getReceiveBufferSize() throws IOException {
+        return grantedSize(socket.getReceiveBufferSize());
+    }
+    
+    @Override
+    public void setSendBufferSize(int size) throws IOException {
+        socket.setSendBufferSize(size);
+    }
+    
+    @Override
+    public int getSendBufferSize() throws IOException {
+        return grantedSize(socket.getSendBufferSize());
+    }
+    
+    private static int grantedSize(int reported) {
+        return KERNEL_DOUBLES_BUFFERS ? reported / 2 : reported;
+    }
+    
+    @Override
+    public void setLoopbackEnabled(boolean enabled) throws IOException {
+        socket.setOption(StandardSocketOptions.IP_MULTICAST_LOOP, enabled);
+    }
+    
+    @Override
+    public long getReceiveDrops() {
+        // El inodo se resolvió al crear el socket; aquí solo se lee /proc/net/udp
+        return KernelUdpStats.readSocketDrops(socketInode);
+    }
+    
+    @Override
+    public long getRcvbufErrors() {
+        return KernelUdpStats.readRcvbufErrors();
+    }
+    
+    @Override
+    public int getLocalPort() {
+        return socket.getLocalPort();
+    }
+    
+    @Override
+    public String getInterfaceName() {
+        return ztInterface != null ? ztInterface.getDisplayName() : null;
+    }
+    
+    @Override
+    public boolean isClosed() {
+        return socket.isClosed();
+    }
+    
+    @Override
+    public void close() {
+        socket.close();
+    }
+    
+    private static boolean detectBufferDoubling() {
+        try (DatagramSocket probe = new DatagramSocket()) {
+            probe.setReceiveBufferSize(BUFFER_PROBE_SIZE);
+            return probe.getReceiveBufferSize() == 2 * BUFFER_PROBE_SIZE;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+    
+    /**
+     * Detecta automáticamente la interfaz de red ZeroTier
+     */
+    private static NetworkInterface detectZeroTierInterface() {
+        try {
+            Enumeration<NetworkInterface> interfaces = NetworkInterface.getNetworkInterfaces();
+            while (interfaces.hasMoreElements()) {
+                NetworkInterface ni = interfaces.nextElement();
+                String name = ni.getName().toLowerCase();
+                String displayName = ni.getDisplayName().toLowerCase();
+                
+                // Buscar interfaces ZeroTier por nombre
+                if ((name.contains("zt") || displayName.contains("zerotier") || 
+                     name.startsWith("zt") || displayName.contains("zt")) && 
+                    ni.isUp() && !ni.isLoopback()) {
+                    
+                    // Verificar que tenga direcciones IP asignadas
+                    Enumeration<InetAddress> addresses = ni.getInetAddresses();
+                    if (addresses.hasMoreElements()) {
+                        return ni;
+                    }
+                }
+            }
+        } catch (SocketException e) {
+            System.err.println("[ERROR] Error detectando interfaces: " + e.getMessage());
+        }
+        return null;
+    }
+}
@@ -0,0 +1,263 @@
+package forZeroTier;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SocketTuner - Ajuste adaptativo de buffers y detección de descartes del kernel
+ * Proyecto: Sistema de Chat Multicast con ZeroTier
+ * Características: Dimensiona SO_RCVBUF según la tasa de mensajes observada, lo duplica cuando
+ * el kernel empieza a descartar datagramas y, si ya no puede crecer, descarta carga en la
+ * aplicación para vaciar el socket más rápido. El recorte solo se profundiza mientras reduce
+ * los descartes del kernel; si no ayuda (la lectura del socket es el cuello de botella) se revierte
+ *
+ * No es seguro entre hilos: solo debe usarlo el hilo receptor. Las lecturas van por ReceiverMetrics.
+ */
+public class SocketTuner {
+    public static final int RECEIVE_TIMEOUT_MILLIS = 250;    // Cada cuánto despierta un receive sin tráfico
+    public static final int INITIAL_RECEIVE_BUFFER = 256 * 1024;
+    public static final int MAX_RECEIVE_BUFFER = 8 * 1024 * 1024;
+    public static final int SEND_BUFFER = 256 * 1024;
+    
+    private static final long TICK_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final double HEADROOM_SECONDS = 0.5;     // El buffer debe absorber medio segundo de tráfico
+    private static final int DATAGRAM_OVERHEAD = 768;       // Memoria aproximada que el kernel cobra por datagrama
+    private static final double RATE_SMOOTHING = 0.3;
+    private static final double SHED_FACTOR = 0.8;          // Cada recorte entrega el 80% de lo anterior
+    private static final double MIN_DISPATCH_SHARE = 0.5;   // Se entrega al menos la mitad de lo que se leía sin descartar
+    private static final int CALM_TICKS_TO_RECOVER = 5;
+    
+    private final MulticastTransport transport;
+    private final ReceiverMetrics metrics;
+    private long lastTickNanos;
+    private long tickMessages = 0;
+    private long tickBytes = 0;
+    private long tickDispatched = 0;
+    private double messageRate = 0.0;
+    private double byteRate = 0.0;
+    private long lastKernelDrops = 0;
+    private long rcvbufErrorsBaseline = -1;
+    private int requestedReceiveBuffer = 0;
+    private boolean atMaximum = false;
+    private long dispatchBudget = Long.MAX_VALUE;
+    private long dispatchFloor = 1;
+    private double dropRateAtLastCut = 0.0;
+    private boolean sheddingIneffective = false;   // Un recorte no redujo los descartes: no reintentar hasta la calma
+    private int calmTicks = 0;
+    private volatile boolean verbose = true;
+    
+    public SocketTuner(MulticastTransport transport, ReceiverMetrics metrics) {
+        this.transport = transport;
+        this.metrics = metrics;
+        this.lastTickNanos = transport.nanoTime();
+    }
+    
+    /**
+     * Configura el socket de envío: SO_SNDBUF y IP_MULTICAST_LOOP para ver a otros nodos del mismo host
+     */
+    public static void configureSender(MulticastTransport transport) {
+        try {
+            transport.setSendBufferSize(SEND_BUFFER);
+            transport.setLoopbackEnabled(true);
+        } catch (IOException e) {
+            System.out.println("[ADVERTENCIA] No se pudo ajustar el socket de envío: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Configura el socket de recepción: timeout de receive, buffer inicial y contadores base
+     */
+    public void configureReceiver() {
+        try {
+            transport.setSoTimeout(RECEIVE_TIMEOUT_MILLIS);
+        } catch (IOException e) {
+            System.out.println("[ADVERTENCIA] No se pudo configurar el timeout de recepción: " + e.getMessage());
+        }
+        keepOrRequestInitialBuffer();
+        
+        long kernelDrops = transport.getReceiveDrops();
+        lastKernelDrops = Math.max(0, kernelDrops);
+        metrics.setKernelDrops(kernelDrops);
+        rcvbufErrorsBaseline = transport.getRcvbufErrors();
+        metrics.setRcvbufErrors(rcvbufErrorsBaseline >= 0 ? 0 : -1);
+        lastTickNanos = transport.nanoTime();
+    }
+    
+    /**
+     * Registra un datagrama leído del socket
+     * Retorna false si, por sobrecarga, no debe entregarse a los listeners. El presupuesto se reparte
+     * a lo largo del segundo para que los descartes se intercalen y el socket se vacíe de forma pareja
+     */
+    public boolean onMessage(int bytes) {
+        metrics.recordMessage(bytes);
+        tickMessages++;
+        tickBytes += bytes;
+        
+        if (metrics.isShedding() && tickDispatched >= pacedBudget()) {
+            metrics.recordShed();
+            return false;
+        }
+        tickDispatched++;
+        return true;
+    }
+    
+    private double pacedBudget() {
+        double elapsedTicks = (transport.nanoTime() - lastTickNanos) / (double) TICK_NANOS;
+        return dispatchBudget * elapsedTicks;
+    }
+    
+    /**
+     * Revisa la tasa y los contadores del kernel una vez por segundo del reloj del transporte
+     * Se invoca tras cada receive, incluido el timeout, por lo que corre aunque no haya tráfico
+     */
+    public void tick() {
+        long now = transport.nanoTime();
+        long elapsed = now - lastTickNanos;
+        if (elapsed < TICK_NANOS) {
+            return;
+        }
+        
+        // Promedio móvil de la tasa de mensajes y de la memoria que ocupan en el kernel
+        double seconds = elapsed / (double) TimeUnit.SECONDS.toNanos(1);
+        messageRate += RATE_SMOOTHING * (tickMessages / seconds - messageRate);
+        byteRate += RATE_SMOOTHING * ((tickBytes + tickMessages * DATAGRAM_OVERHEAD) / seconds - byteRate);
+        metrics.setMessageRate(messageRate);
+        
+        long newDrops = 0;
+        long kernelDrops = transport.getReceiveDrops();
+        if (kernelDrops >= 0) {
+            // La columna drops es acumulada desde que se creó el socket
+            newDrops = kernelDrops - lastKernelDrops;
+            lastKernelDrops = kernelDrops;
+            metrics.setKernelDrops(kernelDrops);
+        }
+        
+        long rcvbufErrors = transport.getRcvbufErrors();
+        if (rcvbufErrors >= 0 && rcvbufErrorsBaseline >= 0) {
+            metrics.setRcvbufErrors(rcvbufErrors - rcvbufErrorsBaseline);
+        }
+        
+        if (newDrops > 0) {
+            onKernelDrops(newDrops, newDrops / seconds);
+        } else {
+            onCalmTick();
+        }
+        
+        tickMessages = 0;
+        tickBytes = 0;
+        tickDispatched = 0;
+        lastTickNanos = now;
+    }
+    
+    /**
+     * El kernel descartó datagramas: primero se agranda el buffer, luego se descarta carga
+     */
+    private void onKernelDrops(long newDrops, double dropRate) {
+        calmTicks = 0;
+        
+        if (!atMaximum) {
+            int size = (int) Math.min(MAX_RECEIVE_BUFFER, (long) requestedReceiveBuffer * 2);
+            log("[AJUSTE] " + newDrops + " descartes del kernel, SO_RCVBUF -> " + size + " bytes");
+            requestReceiveBuffer(size);
+            return;
+        }
+        if (sheddingIneffective) {
+            return;
+        }
+        
+        // Sin margen para crecer: entregar menos mensajes para vaciar el socket más rápido, sin bajar de
+        // una fracción de la tasa de lectura previa (al descartar, la lectura se acelera y ya no sirve de referencia)
+        if (!metrics.isShedding()) {
+            log("[AJUSTE] Buffer al máximo y el kernel sigue descartando, activando descarte de carga");
+            dispatchFloor = Math.max(1, (long) (tickMessages * MIN_DISPATCH_SHARE));
+            dispatchBudget = Math.max(dispatchFloor, (long) (tickDispatched * SHED_FACTOR));
+            metrics.setShedding(true);
+        } else if (dropRate < dropRateAtLastCut) {
+            // El recorte anterior redujo los descartes: se recorta un poco más
+            dispatchBudget = Math.max(dispatchFloor, (long) (dispatchBudget * SHED_FACTOR));
+        } else {
+            // Recortar no ayudó: la lectura del socket, no los listeners, limita el vaciado
+            dispatchBudget = (long) (dispatchBudget / SHED_FACTOR);
+            if (dispatchBudget >= tickMessages) {
+                log("[AJUSTE] El descarte de carga no reduce los descartes del kernel, desactivándolo");
+                stopShedding();
+                sheddingIneffective = true;
+            }
+        }
+        dropRateAtLastCut = dropRate;
+    }
+    
+    /**
+     * Sin descartes: se dimensiona el buffer por la tasa y se sale del modo de descarte tras un tiempo estable
+     */
+    private void onCalmTick() {
+        calmTicks++;
+        
+        int target = (int) Math.min(MAX_RECEIVE_BUFFER, byteRate * HEADROOM_SECONDS);
+        if (!atMaximum && target > requestedReceiveBuffer) {
+            requestReceiveBuffer(target);
+        }
+        
+        if (calmTicks >= CALM_TICKS_TO_RECOVER) {
+            sheddingIneffective = false;
+            if (metrics.isShedding()) {
+                log("[AJUSTE] Sin descartes del kernel, desactivando descarte de carga");
+                stopShedding();
+            }
+        }
+    }
+    
+    private void stopShedding() {
+        metrics.setShedding(false);
+        dispatchBudget = Long.MAX_VALUE;
+    }
+    
+    /**
+     * Pide el buffer inicial salvo que el sistema ya asigne uno mayor, que se conserva
+     */
+    private void keepOrRequestInitialBuffer() {
+        try {
+            int current = transport.getReceiveBufferSize();
+            if (current >= INITIAL_RECEIVE_BUFFER) {
+                requestedReceiveBuffer = current;
+                atMaximum = current >= MAX_RECEIVE_BUFFER;
+                metrics.setReceiveBufferSize(current);
+                return;
+            }
+        } catch (IOException e) {
+            System.out.println("[ADVERTENCIA] No se pudo leer SO_RCVBUF: " + e.getMessage());
+        }
+        requestReceiveBuffer(INITIAL_RECEIVE_BUFFER);
+    }
+    
+    private void requestReceiveBuffer(int size) {
+        try {
+            int previous = metrics.getReceiveBufferSize();
+            transport.setReceiveBufferSize(size);
+            int actual = transport.getReceiveBufferSize();
+            
+            // Si el sistema lo limita (por ejemplo net.core.rmem_max) ya no tiene sentido seguir pidiendo más;
+            // también si el tamaño concedido dejó de crecer, por si el sistema no reporta el valor exacto
+            atMaximum = size >= MAX_RECEIVE_BUFFER || actual < size || (previous > 0 && actual <= previous);
+            if (requestedReceiveBuffer > 0) {
+                metrics.recordResize(actual);
+            } else {
+                metrics.setReceiveBufferSize(actual);
+            }
+            requestedReceiveBuffer = size;
+        } catch (IOException e) {
+            atMaximum = true;
+            System.out.println("[ADVERTENCIA] No se pudo ajustar SO_RCVBUF: " + e.getMessage());
+        }
+    }
+    
+    private void log(String message) {
+        if (verbose) {
+            System.out.println(message);
+        }
+    }
+    
+    public void setVerbose(boolean verbose) {
+        this.verbose = verbose;
+    }
+}
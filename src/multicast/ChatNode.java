@@ -5,7 +5,7 @@ package multicast;
 import java.util.Scanner;
 
 public class ChatNode {
-    public static void main(String[] args) {
+    public static void main(String[] args) throws InterruptedException {
         final String multicastAddress = "224.0.1.1"; // Use a valid multicast address
         final int port = 4446;
 
@@ -16,14 +16,15 @@ public class ChatNode {
         // Start the multicast sender in a separate thread
         MulticastReceiver receiver = new MulticastReceiver(multicastAddress, port);
         Thread receiverThread = new Thread(receiver);
+        receiverThread.setDaemon(true);
         receiverThread.start();
 
         // Start the multicast sender
         MulticastSender sender = new MulticastSender(multicastAddress, port);
         sender.start(username);
 
-        // Wait for the receiver thread to finish
-        System.out.println("Press any key to exit...");
-        System.exit(0);
+        // Stop the receiver and wait for its thread instead of forcing System.exit
+        receiver.stop();
+        receiverThread.join(1000);
     }
 }
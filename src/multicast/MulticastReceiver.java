@@ -3,6 +3,8 @@ package multicast;
 public class MulticastReceiver implements Runnable {
     private final String multicastAddress;
     private final int port;
+    private volatile boolean running = true;
+    private volatile java.net.MulticastSocket socket;
 
     public MulticastReceiver(String multicastAddress, int port) {
         this.multicastAddress = multicastAddress;
@@ -12,18 +14,31 @@ public class MulticastReceiver implements Runnable {
     @Override
     public void run() {
         try (java.net.MulticastSocket socket = new java.net.MulticastSocket(port)) {
+            this.socket = socket;
             java.net.InetAddress group = java.net.InetAddress.getByName(multicastAddress);
             socket.joinGroup(group);
 
             byte[] buffer = new byte[1024];
-            while (true) {
+            while (running) {
                 java.net.DatagramPacket packet = new java.net.DatagramPacket(buffer, buffer.length);
                 socket.receive(packet);
                 String message = new String(packet.getData(), 0, packet.getLength());
                 System.out.println("Received: " + message);
             }
         } catch (Exception e) {
-            e.printStackTrace();
+            // Closing the socket from stop() is the normal way out of receive()
+            if (running) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    // Closes the socket so a blocked receive() returns immediately
+    public void stop() {
+        running = false;
+        java.net.MulticastSocket current = socket;
+        if (current != null) {
+            current.close();
         }
     }
 
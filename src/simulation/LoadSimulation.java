@@ -0,0 +1,180 @@
+package simulation;
+
+import forZeroTier.ChatClient;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LoadSimulation - Prueba de carga del chat sobre la red simulada
+ * Proyecto: Sistema de Chat Multicast con ZeroTier
+ * Características: Ejecuta N ChatClient en una sola JVM, cada uno envía M mensajes al grupo
+ * y se reportan entregas, pérdidas y desbordes del buffer de recepción
+ *
+ * Con --verify la simulación se ejecuta una segunda vez con la misma semilla y falla si los contadores
+ * o el orden de llegada en algún nodo difieren, de modo que sirve como verificación de reproducibilidad.
+ *
+ * Uso: java simulation.LoadSimulation [nodos] [mensajesPorNodo] [pérdida] [semilla] [bufferBytes] [--verify]
+ */
+public class LoadSimulation {
+    private static final String MULTICAST_ADDRESS = "224.0.0.1";
+    private static final int PORT = 4446;
+    
+    public static void main(String[] args) throws Exception {
+        List<String> params = new ArrayList<>(Arrays.asList(args));
+        boolean verify = params.remove("--verify");
+        int nodes = params.size() > 0 ? Integer.parseInt(params.get(0)) : 200;
+        int messagesPerNode = params.size() > 1 ? Integer.parseInt(params.get(1)) : 5;
+        double lossRate = params.size() > 2 ? Double.parseDouble(params.get(2)) : 0.01;
+        long seed = params.size() > 3 ? Long.parseLong(params.get(3)) : 42L;
+        int receiveBufferSize = params.size() > 4 ? Integer.parseInt(params.get(4)) : 0;
+        
+        System.out.println("=== SIMULACIÓN DE CARGA ===");
+        System.out.println("Nodos: " + nodes + ", mensajes por nodo: " + messagesPerNode + 
+            ", pérdida: " + lossRate + ", semilla: " + seed + 
+            (receiveBufferSize > 0 ? ", buffer: " + receiveBufferSize + " bytes" : ""));
+            
+        SimulationResult result = run(nodes, messagesPerNode, lossRate, seed, receiveBufferSize);
+        
+        long expected = (long) nodes * nodes * messagesPerNode;
+        System.out.println();
+        System.out.println("Datagramas enviados:   " + result.packetsSent);
+        System.out.println("Entregas esperadas:    " + expected);
+        System.out.println("Entregas realizadas:   " + result.packetsDelivered);
+        System.out.println("Mensajes procesados:   " + result.messagesReceived);
+        System.out.println("Perdidos en la red:    " + result.packetsLost);
+        System.out.println("Reordenados:           " + result.packetsReordered);
+        System.out.println("Duplicados:            " + result.packetsDuplicated);
+        System.out.println("Desbordes de buffer:   " + result.bufferOverflows);
+        System.out.println("Tiempo virtual:        " + result.virtualMillis + " ms");
+        System.out.println("Inicio máximo:         " + result.maxStartupMillis + " ms");
+        System.out.println("Cierre máximo:         " + result.maxShutdownMillis + " ms");
+        System.out.println("Tiempo real:           " + result.wallMillis + " ms");
+        
+        System.out.println("Huella de llegadas:    " + Long.toHexString(result.fingerprint));
+        
+        if (verify) {
+            // Misma semilla, mismo resultado: contadores y orden de llegada en cada nodo
+            SimulationResult repeated = run(nodes, messagesPerNode, lossRate, seed, receiveBufferSize);
+            if (!result.sameOutcome(repeated)) {
+                throw new IllegalStateException("La simulación no es reproducible con la semilla " + seed);
+            }
+            System.out.println("Reproducible:          sí (" + repeated.wallMillis + " ms en la segunda corrida)");
+        }
+        System.out.println("===========================");
+    }
+    
+    /**
+     * Ejecuta una simulación completa sobre una red nueva y retorna sus resultados
+     */
+    private static SimulationResult run(int nodes, int messagesPerNode, double lossRate, long seed,
+                                        int receiveBufferSize) throws IOException {
+        long wallStart = System.nanoTime();
+        SimulatedNetwork network = new SimulatedNetwork(seed);
+        network.setLatencyMillis(20);
+        network.setJitterMillis(5);
+        network.setLossRate(lossRate);
+        network.setReorderRate(0.01);
+        network.setDuplicateRate(0.001);
+        network.setBandwidthBytesPerSecond(1_000_000);
+        if (receiveBufferSize > 0) {
+            network.setReceiveBufferSize(receiveBufferSize);
+        }
+        
+        AtomicLong received = new AtomicLong();
+        long[] arrivalHashes = new long[nodes];   // Huella del orden de llegada en cada nodo
+        List<ChatClient> clients = new ArrayList<>();
+        SimulationResult result = new SimulationResult();
+        
+        try {
+            // Un host por nodo, con un socket de envío y otro de recepción como en ChatNode
+            // start() retorna cuando el receptor ya se unió al grupo
+            for (int i = 0; i < nodes; i++) {
+                int node = i;
+                InetAddress host = network.createHost();
+                ChatClient client = new ChatClient(MULTICAST_ADDRESS, PORT, "nodo" + i,
+                    () -> network.createTransport(host, 0), () -> network.createTransport(host, PORT));
+                client.setVerbose(false);
+                client.addMessageListener(message -> {
+                    received.incrementAndGet();
+                    arrivalHashes[node] = arrivalHashes[node] * 31 + 
+                        (message.getSenderAddress() + " " + message).hashCode();
+                });
+                client.start();
+                clients.add(client);
+            }
+            
+            // Todos los nodos envían en el instante virtual 0
+            List<CompletableFuture<Void>> sends = new ArrayList<>();
+            for (ChatClient client : clients) {
+                for (int m = 0; m < messagesPerNode; m++) {
+                    sends.add(client.send("mensaje " + m));
+                }
+            }
+            CompletableFuture.allOf(sends.toArray(new CompletableFuture<?>[0])).join();
+            
+            // Los callbacks corren en este hilo: al volver ya se procesó todo lo entregado
+            network.runUntilIdle();
+            
+            result.packetsSent = network.getPacketsSent();
+            result.packetsDelivered = network.getPacketsDelivered();
+            result.messagesReceived = received.get();
+            result.packetsLost = network.getPacketsLost();
+            result.packetsReordered = network.getPacketsReordered();
+            result.packetsDuplicated = network.getPacketsDuplicated();
+            result.bufferOverflows = network.getBufferOverflows();
+            result.virtualMillis = network.currentTimeMillis();
+            for (long hash : arrivalHashes) {
+                result.fingerprint = result.fingerprint * 31 + hash;
+            }
+        } finally {
+            for (ChatClient client : clients) {
+                client.close();
+            }
+            network.close();
+        }
+        
+        for (ChatClient client : clients) {
+            result.maxStartupMillis = Math.max(result.maxStartupMillis, client.getStartupMillis());
+            result.maxShutdownMillis = Math.max(result.maxShutdownMillis, client.getShutdownMillis());
+        }
+        result.wallMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - wallStart);
+        return result;
+    }
+    
+    /**
+     * Resultados de una corrida; los tiempos reales quedan fuera de la comparación
+     */
+    private static final class SimulationResult {
+        private long packetsSent;
+        private long packetsDelivered;
+        private long messagesReceived;
+        private long packetsLost;
+        private long packetsReordered;
+        private long packetsDuplicated;
+        private long bufferOverflows;
+        private long virtualMillis;
+        private long fingerprint;
+        private long maxStartupMillis;
+        private long maxShutdownMillis;
+        private long wallMillis;
+        
+        private boolean sameOutcome(SimulationResult other) {
+            return packetsSent == other.packetsSent && 
+                packetsDelivered == other.packetsDelivered && 
+                messagesReceived == other.messagesReceived && 
+                packetsLost == other.packetsLost && 
+                packetsReordered == other.packetsReordered && 
+                packetsDuplicated == other.packetsDuplicated && 
+                bufferOverflows == other.bufferOverflows && 
+                virtualMillis == other.virtualMillis && 
+                fingerprint == other.fingerprint;
+        }
+    }
+}
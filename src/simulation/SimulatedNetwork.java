@@ -0,0 +1,539 @@
+package simulation;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SimulatedNetwork - Red multicast simulada en memoria con reloj virtual
+ * Proyecto: Sistema de Chat Multicast con ZeroTier
+ * Características: Latencia, jitter, pérdida, reordenamiento, duplicación y límite de ancho
+ * de banda configurables; miles de nodos en una sola JVM sin sockets reales
+ *
+ * El tiempo solo avanza con advance() o runUntilIdle(), que actúan como bucle de eventos: cada
+ * datagrama llega al buffer de recepción del destino y, si cabe, la aplicación lo lee cuando
+ * termina con los anteriores. Cada lectura cuesta setReadCostMicros, o setShedCostMicros si la
+ * aplicación descarta el datagrama sin procesarlo. Tanto el llenado del buffer como el orden
+ * de entrega se deciden en tiempo virtual, y los empates se rompen por (origen, secuencia del
+ * origen), nunca por la planificación de hilos. Las decisiones aleatorias de cada paquete se
+ * derivan de (semilla, origen, secuencia del origen, destino).
+ *
+ * Con la misma semilla el resultado es idéntico siempre que los envíos ocurran en el mismo orden
+ * entre llamadas a advance() o desde los callbacks de recepción, que se ejecutan en el hilo que
+ * avanza el reloj. Los transportes son dirigidos por eventos: ChatClient no crea hilos por nodo.
+ */
+public class SimulatedNetwork implements AutoCloseable {
+    private static final int FIRST_EPHEMERAL_PORT = 40000;
+    private static final int ARRIVAL = 1;   // El datagrama llega al buffer de recepción del destino
+    private static final int READ = 0;      // La aplicación lee el datagrama del buffer
+    
+    private final long seed;
+    private final Object lock = new Object();
+    private final PriorityQueue<Delivery> pendingDeliveries;
+    private final Map<InetAddress, Set<SimulatedTransport>> groupMembers;
+    private final Map<InetSocketAddress, SimulatedTransport> boundTransports;
+    private final Map<InetAddress, Long> linkFreeAt;
+    private final Set<SimulatedTransport> transports;
+    private final Set<SimulatedTransport> clockWaiters;     // Transportes con un receive con timeout en curso
+    private volatile long nowNanos = 0;                     // Se escribe con el candado, se lee sin él
+    private long readSequence = 0;
+    private int nextHostId = 1;
+    private int nextTransportId = 1;
+    private int nextEphemeralPort = FIRST_EPHEMERAL_PORT;
+    
+    // Condiciones de la red
+    private long latencyNanos = 0;
+    private long jitterNanos = 0;
+    private double lossRate = 0.0;
+    private double reorderRate = 0.0;
+    private double duplicateRate = 0.0;
+    private long bandwidthBytesPerSecond = 0;
+    private int receiveBufferSize = 212992;
+    private int maxReceiveBufferSize = 0;   // 0: igual a receiveBufferSize
+    private long readCostNanos = TimeUnit.MICROSECONDS.toNanos(10);
+    private long shedCostNanos = TimeUnit.MICROSECONDS.toNanos(1);
+    
+    // Estadísticas
+    private long packetsSent = 0;
+    private long packetsDelivered = 0;
+    private long packetsLost = 0;
+    private long packetsReordered = 0;
+    private long packetsDuplicated = 0;
+    private long bufferOverflows = 0;
+    
+    public SimulatedNetwork(long seed) {
+        this.seed = seed;
+        this.pendingDeliveries = new PriorityQueue<>();
+        this.groupMembers = new HashMap<>();
+        this.boundTransports = new HashMap<>();
+        this.linkFreeAt = new HashMap<>();
+        this.transports = new LinkedHashSet<>();
+        this.clockWaiters = ConcurrentHashMap.newKeySet();
+    }
+    
+    /**
+     * Reserva una nueva dirección de host en el rango de ZeroTier (10.147.x.y)
+     */
+    public InetAddress createHost() {
+        synchronized (lock) {
+            int id = nextHostId++;
+            if (id > 0xFFFE) {
+                throw new IllegalStateException("Se alcanzó el máximo de hosts simulados");
+            }
+            try {
+                return InetAddress.getByAddress(new byte[]{10, (byte) 147, (byte) (id >> 8), (byte) id});
+            } catch (UnknownHostException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+    
+    /**
+     * Crea un transporte en un host nuevo
+     */
+    public SimulatedTransport createTransport(int port) {
+        return createTransport(createHost(), port);
+    }
+    
+    /**
+     * Crea un transporte en el host indicado; el puerto 0 asigna uno efímero
+     */
+    public SimulatedTransport createTransport(InetAddress host, int port) {
+        synchronized (lock) {
+            int boundPort = port > 0 ? port : nextEphemeralPort++;
+            InetSocketAddress key = new InetSocketAddress(host, boundPort);
+            if (boundTransports.containsKey(key)) {
+                throw new IllegalArgumentException("Dirección en uso: " + host.getHostAddress() + ":" + boundPort);
+            }
+            
+            SimulatedTransport transport = new SimulatedTransport(this, nextTransportId++, host, boundPort,
+                receiveBufferSize, maxReceiveBufferSize > 0 ? maxReceiveBufferSize : receiveBufferSize);
+            boundTransports.put(key, transport);
+            transports.add(transport);
+            return transport;
+        }
+    }
+    
+    void joinGroup(SimulatedTransport transport, InetAddress group) {
+        synchronized (lock) {
+            groupMembers.computeIfAbsent(group, g -> new LinkedHashSet<>()).add(transport);
+        }
+    }
+    
+    void leaveGroup(SimulatedTransport transport, InetAddress group) {
+        synchronized (lock) {
+            Set<SimulatedTransport> members = groupMembers.get(group);
+            if (members != null) {
+                members.remove(transport);
+            }
+        }
+    }
+    
+    void unregister(SimulatedTransport transport) {
+        synchronized (lock) {
+            for (Set<SimulatedTransport> members : groupMembers.values()) {
+                members.remove(transport);
+            }
+            boundTransports.remove(new InetSocketAddress(transport.getAddress(), transport.getPort()));
+            transports.remove(transport);
+        }
+    }
+    
+    /**
+     * Programa la entrega de un datagrama aplicando las condiciones de la red
+     */
+    void send(SimulatedTransport source, long sequence, DatagramPacket packet) throws IOException {
+        if (packet.getAddress() == null) {
+            throw new IOException("Datagrama sin dirección de destino");
+        }
+        
+        byte[] data = new byte[packet.getLength()];
+        System.arraycopy(packet.getData(), packet.getOffset(), data, 0, data.length);
+        InetAddress destination = packet.getAddress();
+        int destinationPort = packet.getPort();
+        
+        synchronized (lock) {
+            packetsSent++;
+            
+            // Serializar en el enlace de subida del host según el ancho de banda
+            long departure = Math.max(nowNanos, linkFreeAt.getOrDefault(source.getAddress(), nowNanos));
+            if (bandwidthBytesPerSecond > 0) {
+                departure += data.length * TimeUnit.SECONDS.toNanos(1) / bandwidthBytesPerSecond;
+                linkFreeAt.put(source.getAddress(), departure);
+            }
+            
+            List<SimulatedTransport> targets = new ArrayList<>();
+            if (destination.isMulticastAddress()) {
+                Set<SimulatedTransport> members = groupMembers.get(destination);
+                if (members != null) {
+                    for (SimulatedTransport member : members) {
+                        // Sin IP_MULTICAST_LOOP el host emisor no recibe su propio tráfico
+                        boolean sameHost = member.getAddress().equals(source.getAddress());
+                        if (member.getPort() == destinationPort && (!sameHost || source.isLoopbackEnabled())) {
+                            targets.add(member);
+                        }
+                    }
+                }
+            } else {
+                SimulatedTransport target = boundTransports.get(new InetSocketAddress(destination, destinationPort));
+                if (target != null) {
+                    targets.add(target);
+                }
+            }
+            
+            for (SimulatedTransport target : targets) {
+                SplittableRandom random = new SplittableRandom(
+                    mix(seed, source.getId(), sequence, target.getId()));
+                    
+                if (random.nextDouble() < lossRate) {
+                    packetsLost++;
+                    continue;
+                }
+                
+                long delay = latencyNanos + (jitterNanos > 0 ? random.nextLong(jitterNanos + 1) : 0);
+                if (random.nextDouble() < reorderRate) {
+                    // Retener el paquete para que los siguientes lo adelanten
+                    delay += latencyNanos + jitterNanos + 1;
+                    packetsReordered++;
+                }
+                scheduleArrival(departure + delay, target, source, sequence, 0, data);
+                
+                if (random.nextDouble() < duplicateRate) {
+                    scheduleArrival(departure + delay + (jitterNanos > 0 ? random.nextLong(jitterNanos + 1) : 0),
+                        target, source, sequence, 1, data);
+                    packetsDuplicated++;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Los empates en el mismo instante se ordenan por (origen, secuencia, destino, copia)
+     */
+    private void scheduleArrival(long time, SimulatedTransport target, SimulatedTransport source,
+                                 long sequence, int copy, byte[] data) {
+        pendingDeliveries.add(new Delivery(time, ARRIVAL, source.getId(), sequence, target.getId(), copy,
+            target, new SimulatedTransport.Datagram(source.getAddress(), source.getPort(), data)));
+    }
+    
+    /**
+     * Llegada al buffer de recepción: se descarta si no cabe en el instante virtual de llegada,
+     * si cabe queda en orden FIFO hasta que la aplicación lo lea
+     */
+    private void arrive(Delivery arrival) {
+        SimulatedTransport target = arrival.target;
+        if (target.isClosed()) {
+            return;
+        }
+        
+        if (!target.enqueue(arrival.datagram)) {
+            bufferOverflows++;
+            return;
+        }
+        scheduleRead(target, arrival.time);
+    }
+    
+    /**
+     * Programa la próxima lectura del destino si está libre; una sola lectura en curso por transporte,
+     * así su costo se decide al terminar según si la aplicación procesó o descartó el datagrama
+     */
+    private void scheduleRead(SimulatedTransport target, long time) {
+        long readAt = target.scheduleRead(time);
+        if (readAt >= 0) {
+            pendingDeliveries.add(new Delivery(readAt, READ, readSequence++, 0, 0, 0, target, null));
+        }
+    }
+    
+    private static long mix(long seed, long source, long sequence, long target) {
+        return seed ^ (source * 0x9E3779B97F4A7C15L) ^ (sequence * 0xC2B2AE3D27D4EB4FL) ^ (target * 0x165667B19E3779F9L);
+    }
+    
+    /**
+     * Avanza el reloj virtual entregando los datagramas cuyo instante de lectura se alcanza
+     * Los callbacks de recepción se ejecutan en el hilo que llama, fuera del candado de la red
+     */
+    public void advance(long millis) {
+        long target;
+        synchronized (lock) {
+            target = nowNanos + TimeUnit.MILLISECONDS.toNanos(millis);
+        }
+        deliverUntil(target);
+        synchronized (lock) {
+            nowNanos = Math.max(nowNanos, target);
+        }
+        wakeClockWaiters();
+    }
+    
+    /**
+     * Avanza el reloj virtual hasta entregar todos los datagramas pendientes
+     */
+    public void runUntilIdle() {
+        deliverUntil(Long.MAX_VALUE);
+        wakeClockWaiters();
+    }
+    
+    void awaitClock(SimulatedTransport transport) {
+        clockWaiters.add(transport);
+    }
+    
+    void stopAwaitingClock(SimulatedTransport transport) {
+        clockWaiters.remove(transport);
+    }
+    
+    private void wakeClockWaiters() {
+        for (SimulatedTransport transport : clockWaiters) {
+            transport.onClockAdvanced();
+        }
+    }
+    
+    private void deliverUntil(long target) {
+        while (true) {
+            Delivery read;
+            SimulatedTransport.Datagram datagram;
+            synchronized (lock) {
+                Delivery next = pendingDeliveries.peek();
+                if (next == null || next.time > target) {
+                    return;
+                }
+                pendingDeliveries.poll();
+                nowNanos = Math.max(nowNanos, next.time);
+                
+                if (next.kind == ARRIVAL) {
+                    arrive(next);
+                    continue;
+                }
+                if (next.target.isClosed()) {
+                    continue;
+                }
+                packetsDelivered++;
+                read = next;
+                datagram = next.target.takeBuffered();
+            }
+            
+            // Fuera del candado: el callback puede enviar nuevos mensajes a la red
+            boolean processed = read.target.dispatch(datagram);
+            synchronized (lock) {
+                read.target.finishRead(read.time + (processed ? readCostNanos : shedCostNanos));
+                scheduleRead(read.target, read.time);
+            }
+        }
+    }
+    
+    /**
+     * Cierra todos los transportes creados, desbloqueando sus receptores
+     */
+    @Override
+    public void close() {
+        List<SimulatedTransport> snapshot;
+        synchronized (lock) {
+            snapshot = new ArrayList<>(transports);
+            transports.clear();
+            pendingDeliveries.clear();
+        }
+        for (SimulatedTransport transport : snapshot) {
+            transport.close();
+        }
+    }
+    
+    public long currentTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(currentTimeNanos());
+    }
+    
+    long currentTimeNanos() {
+        return nowNanos;
+    }
+    
+    public int getPendingDeliveries() {
+        synchronized (lock) {
+            return pendingDeliveries.size();
+        }
+    }
+    
+    public int getMemberCount(InetAddress group) {
+        synchronized (lock) {
+            Set<SimulatedTransport> members = groupMembers.get(group);
+            return members != null ? members.size() : 0;
+        }
+    }
+    
+    public void setLatencyMillis(long latencyMillis) {
+        synchronized (lock) {
+            this.latencyNanos = TimeUnit.MILLISECONDS.toNanos(latencyMillis);
+        }
+    }
+    
+    /**
+     * Retardo adicional uniforme entre 0 y el valor indicado
+     */
+    public void setJitterMillis(long jitterMillis) {
+        synchronized (lock) {
+            this.jitterNanos = TimeUnit.MILLISECONDS.toNanos(jitterMillis);
+        }
+    }
+    
+    public void setLossRate(double lossRate) {
+        synchronized (lock) {
+            this.lossRate = lossRate;
+        }
+    }
+    
+    public void setReorderRate(double reorderRate) {
+        synchronized (lock) {
+            this.reorderRate = reorderRate;
+        }
+    }
+    
+    public void setDuplicateRate(double duplicateRate) {
+        synchronized (lock) {
+            this.duplicateRate = duplicateRate;
+        }
+    }
+    
+    /**
+     * Límite de subida por host en bytes por segundo (0 = sin límite)
+     */
+    public void setBandwidthBytesPerSecond(long bandwidthBytesPerSecond) {
+        synchronized (lock) {
+            this.bandwidthBytesPerSecond = bandwidthBytesPerSecond;
+        }
+    }
+    
+    /**
+     * Tamaño del buffer de recepción para los transportes creados a partir de ahora (net.core.rmem_default)
+     */
+    public void setReceiveBufferSize(int receiveBufferSize) {
+        synchronized (lock) {
+            this.receiveBufferSize = receiveBufferSize;
+        }
+    }
+    
+    /**
+     * Máximo que una aplicación puede pedir con SO_RCVBUF (net.core.rmem_max)
+     * Si no se configura coincide con setReceiveBufferSize, como en un Linux sin ajustar,
+     * de modo que un buffer reducido para provocar desbordes no se puede agrandar
+     */
+    public void setMaxReceiveBufferSize(int maxReceiveBufferSize) {
+        synchronized (lock) {
+            this.maxReceiveBufferSize = maxReceiveBufferSize;
+        }
+    }
+    
+    /**
+     * Tiempo virtual que la aplicación tarda en leer y procesar cada datagrama (por defecto 10 µs)
+     * Fija el ritmo al que se vacía el buffer de recepción; 0 lo vacía al instante
+     */
+    public void setReadCostMicros(long readCostMicros) {
+        synchronized (lock) {
+            this.readCostNanos = TimeUnit.MICROSECONDS.toNanos(readCostMicros);
+        }
+    }
+    
+    /**
+     * Tiempo virtual que cuesta leer un datagrama que la aplicación descarta sin procesarlo
+     * (descarte de carga); por defecto 1 µs, solo la lectura del socket
+     */
+    public void setShedCostMicros(long shedCostMicros) {
+        synchronized (lock) {
+            this.shedCostNanos = TimeUnit.MICROSECONDS.toNanos(shedCostMicros);
+        }
+    }
+    
+    public long getPacketsSent() {
+        synchronized (lock) {
+            return packetsSent;
+        }
+    }
+    
+    public long getPacketsDelivered() {
+        synchronized (lock) {
+            return packetsDelivered;
+        }
+    }
+    
+    public long getPacketsLost() {
+        synchronized (lock) {
+            return packetsLost;
+        }
+    }
+    
+    public long getPacketsReordered() {
+        synchronized (lock) {
+            return packetsReordered;
+        }
+    }
+    
+    public long getPacketsDuplicated() {
+        synchronized (lock) {
+            return packetsDuplicated;
+        }
+    }
+    
+    /**
+     * Datagramas descartados porque el buffer de recepción del destino estaba lleno
+     */
+    public long getBufferOverflows() {
+        synchronized (lock) {
+            return bufferOverflows;
+        }
+    }
+    
+    /**
+     * Evento del reloj virtual: llegada de un datagrama al buffer o lectura por la aplicación
+     * El orden depende solo de (instante, tipo, claves), nunca del orden de inserción
+     */
+    private static final class Delivery implements Comparable<Delivery> {
+        private final long time;
+        private final int kind;
+        private final long key1;
+        private final long key2;
+        private final long key3;
+        private final long key4;
+        private final SimulatedTransport target;
+        private final SimulatedTransport.Datagram datagram;     // Solo en las llegadas; la lectura toma el del buffer
+        
+        private Delivery(long time, int kind, long key1, long key2, long key3, long key4,
+                         SimulatedTransport target, SimulatedTransport.Datagram datagram) {
+            this.time = time;
+            this.kind = kind;
+            this.key1 = key1;
+            this.key2 = key2;
+            this.key3 = key3;
+            this.key4 = key4;
+            this.target = target;
+            this.datagram = datagram;
+        }
+        
+        @Override
+        public int compareTo(Delivery other) {
+            int result = Long.compare(time, other.time);
+            if (result == 0) {
+                result = Integer.compare(kind, other.kind);
+            }
+            if (result == 0) {
+                result = Long.compare(key1, other.key1);
+            }
+            if (result == 0) {
+                result = Long.compare(key2, other.key2);
+            }
+            if (result == 0) {
+                result = Long.compare(key3, other.key3);
+            }
+            if (result == 0) {
+                result = Long.compare(key4, other.key4);
+            }
+            return result;
+        }
+    }
+}
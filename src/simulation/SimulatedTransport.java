@@ -0,0 +1,341 @@
+package simulation;
+
+import forZeroTier.MulticastTransport;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * SimulatedTransport - Socket multicast simulado dentro de un SimulatedNetwork
+ * Proyecto: Sistema de Chat Multicast con ZeroTier
+ * Características: Buffer de recepción acotado en bytes que se llena y vacía en tiempo virtual
+ * (descarta al llenarse, como el kernel), entrega por callback desde el bucle de eventos de la
+ * red o, sin callback, receive bloqueante con timeout en tiempo virtual que se desbloquea al cerrar
+ *
+ * El estado del buffer (receiveBuffer, bufferedBytes, reading, readyAt) solo se toca con el
+ * candado de SimulatedNetwork tomado
+ */
+public class SimulatedTransport implements MulticastTransport {
+    private final SimulatedNetwork network;
+    private final int id;
+    private final InetAddress address;
+    private final int port;
+    private final ArrayDeque<Datagram> inbox;
+    private final ArrayDeque<Datagram> receiveBuffer;
+    private final int maxReceiveBufferSize;
+    private int receiveBufferSize;
+    private int sendBufferSize;
+    private volatile int soTimeout = 0;
+    private volatile boolean loopbackEnabled = true;
+    private volatile Predicate<DatagramPacket> receiveHandler;
+    private long overflowDrops = 0;
+    private long bufferedBytes = 0;     // Ocupación del buffer en tiempo virtual
+    private boolean reading = false;    // Hay una lectura programada o en curso
+    private long readyAt = 0;           // Instante virtual en que la aplicación queda libre para leer
+    private long sendSequence = 0;
+    private volatile boolean closed = false;
+    
+    SimulatedTransport(SimulatedNetwork network, int id, InetAddress address, int port,
+                       int receiveBufferSize, int maxReceiveBufferSize) {
+        this.network = network;
+        this.id = id;
+        this.address = address;
+        this.port = port;
+        this.maxReceiveBufferSize = maxReceiveBufferSize;
+        this.receiveBufferSize = receiveBufferSize;
+        this.sendBufferSize = receiveBufferSize;
+        this.inbox = new ArrayDeque<>();
+        this.receiveBuffer = new ArrayDeque<>();
+    }
+    
+    @Override
+    public void joinGroup(InetAddress group) throws IOException {
+        ensureOpen();
+        if (!group.isMulticastAddress()) {
+            throw new SocketException("No es una dirección multicast: " + group.getHostAddress());
+        }
+        network.joinGroup(this, group);
+    }
+    
+    @Override
+    public void leaveGroup(InetAddress group) throws IOException {
+        ensureOpen();
+        network.leaveGroup(this, group);
+    }
+    
+    @Override
+    public void send(DatagramPacket packet) throws IOException {
+        long sequence;
+        synchronized (this) {
+            ensureOpen();
+            sequence = sendSequence++;
+        }
+        network.send(this, sequence, packet);
+    }
+    
+    /**
+     * Receive bloqueante para usos sin callback; soTimeout se mide en el reloj virtual de la red,
+     * de modo que solo vence cuando otro hilo lo avanza con advance() o runUntilIdle()
+     */
+    @Override
+    public void receive(DatagramPacket packet) throws IOException {
+        Datagram datagram;
+        int timeout = soTimeout;
+        long deadline = timeout > 0 ? 
+            network.currentTimeNanos() + TimeUnit.MILLISECONDS.toNanos(timeout) : Long.MAX_VALUE;
+        if (timeout > 0) {
+            network.awaitClock(this);
+        }
+        try {
+            synchronized (inbox) {
+                while (inbox.isEmpty() && !closed) {
+                    if (network.currentTimeNanos() >= deadline) {
+                        throw new SocketTimeoutException("Receive timed out");
+                    }
+                    try {
+                        inbox.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new SocketException("Recepción interrumpida");
+                    }
+                }
+                ensureOpen();
+                datagram = inbox.poll();
+            }
+        } finally {
+            if (timeout > 0) {
+                network.stopAwaitingClock(this);
+            }
+        }
+        
+        int length = Math.min(datagram.data.length, packet.getData().length - packet.getOffset());
+        System.arraycopy(datagram.data, 0, packet.getData(), packet.getOffset(), length);
+        packet.setLength(length);
+        packet.setAddress(datagram.sourceAddress);
+        packet.setPort(datagram.sourcePort);
+    }
+    
+    /**
+     * Ubica en el buffer de recepción un datagrama que llega; retorna false si no cabe
+     */
+    boolean enqueue(Datagram datagram) {
+        if (bufferedBytes + datagram.data.length > getReceiveBufferSize()) {
+            synchronized (inbox) {
+                overflowDrops++;
+            }
+            return false;
+        }
+        receiveBuffer.addLast(datagram);
+        bufferedBytes += datagram.data.length;
+        return true;
+    }
+    
+    /**
+     * Si la aplicación no tiene una lectura en curso y hay datos, la marca en curso y retorna
+     * el instante virtual en que empezará; si no, retorna -1
+     */
+    long scheduleRead(long nowNanos) {
+        if (reading || receiveBuffer.isEmpty()) {
+            return -1;
+        }
+        reading = true;
+        return Math.max(nowNanos, readyAt);
+    }
+    
+    /**
+     * Saca del buffer el datagrama que la aplicación empieza a leer, liberando su espacio
+     */
+    Datagram takeBuffered() {
+        Datagram datagram = receiveBuffer.pollFirst();
+        bufferedBytes -= datagram.data.length;
+        return datagram;
+    }
+    
+    /**
+     * La aplicación terminó de leer y queda libre en el instante indicado
+     */
+    void finishRead(long freeAtNanos) {
+        reading = false;
+        readyAt = freeAtNanos;
+    }
+    
+    /**
+     * Entrega a la aplicación un datagrama leído del buffer: al callback si hay uno registrado,
+     * si no a la cola de receive. La invoca el bucle de eventos de la red fuera de su candado
+     * Retorna false si el callback lo descartó sin procesarlo
+     */
+    boolean dispatch(Datagram datagram) {
+        Predicate<DatagramPacket> handler = receiveHandler;
+        if (handler != null) {
+            return !closed && handler.test(
+                new DatagramPacket(datagram.data, datagram.data.length, datagram.sourceAddress, datagram.sourcePort));
+        }
+        
+        synchronized (inbox) {
+            if (closed) {
+                return false;
+            }
+            inbox.add(datagram);
+            // El receptor solo espera con la cola vacía: basta despertarlo en esa transición
+            if (inbox.size() == 1) {
+                inbox.notifyAll();
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * El reloj virtual avanzó: despierta al receive con timeout para que revise su plazo
+     */
+    void onClockAdvanced() {
+        synchronized (inbox) {
+            inbox.notifyAll();
+        }
+    }
+    
+    private void ensureOpen() throws SocketException {
+        if (closed) {
+            throw new SocketException("Socket closed");
+        }
+    }
+    
+    @Override
+    public void setSoTimeout(int timeoutMillis) {
+        this.soTimeout = timeoutMillis;
+    }
+    
+    @Override
+    public void setReceiveBufferSize(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Tamaño de buffer inválido: " + size);
+        }
+        synchronized (inbox) {
+            // Como el kernel con net.core.rmem_max: se concede como máximo el techo de la red
+            this.receiveBufferSize = Math.min(size, maxReceiveBufferSize);
+        }
+    }
+    
+    @Override
+    public int getReceiveBufferSize() {
+        synchronized (inbox) {
+            return receiveBufferSize;
+        }
+    }
+    
+    @Override
+    public synchronized void setSendBufferSize(int size) {
+        this.sendBufferSize = size;
+    }
+    
+    @Override
+    public synchronized int getSendBufferSize() {
+        return sendBufferSize;
+    }
+    
+    @Override
+    public void setLoopbackEnabled(boolean enabled) {
+        this.loopbackEnabled = enabled;
+    }
+    
+    boolean isLoopbackEnabled() {
+        return loopbackEnabled;
+    }
+    
+    @Override
+    public boolean isEventDriven() {
+        return true;
+    }
+    
+    @Override
+    public void setReceiveHandler(Predicate<DatagramPacket> handler) {
+        this.receiveHandler = handler;
+    }
+    
+    @Override
+    public long nanoTime() {
+        return network.currentTimeNanos();
+    }
+    
+    @Override
+    public long getReceiveDrops() {
+        return getOverflowDrops();
+    }
+    
+    /**
+     * La red simulada no tiene un contador global de host; los desbordes propios van en getReceiveDrops
+     */
+    @Override
+    public long getRcvbufErrors() {
+        return -1;
+    }
+    
+    @Override
+    public int getLocalPort() {
+        return port;
+    }
+    
+    @Override
+    public String getInterfaceName() {
+        return null;
+    }
+    
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+    
+    @Override
+    public void close() {
+        synchronized (inbox) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            inbox.clear();
+            inbox.notifyAll();
+        }
+        network.unregister(this);
+    }
+    
+    int getId() {
+        return id;
+    }
+    
+    public InetAddress getAddress() {
+        return address;
+    }
+    
+    public int getPort() {
+        return port;
+    }
+    
+    /**
+     * Datagramas descartados por buffer de recepción lleno
+     */
+    public long getOverflowDrops() {
+        synchronized (inbox) {
+            return overflowDrops;
+        }
+    }
+    
+    /**
+     * Datagrama en el buffer de recepción o, ya leído, en espera de receive
+     */
+    static final class Datagram {
+        private final InetAddress sourceAddress;
+        private final int sourcePort;
+        private final byte[] data;
+        
+        Datagram(InetAddress sourceAddress, int sourcePort, byte[] data) {
+            this.sourceAddress = sourceAddress;
+            this.sourcePort = sourcePort;
+            this.data = data;
+        }
+    }
+}